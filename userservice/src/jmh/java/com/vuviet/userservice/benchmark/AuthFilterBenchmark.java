@@ -0,0 +1,92 @@
+package com.vuviet.userservice.benchmark;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.filter.JwtAuthenticationFilter;
+import com.vuviet.userservice.util.JwtUtil;
+import com.vuviet.userservice.util.PrincipalCache;
+import com.vuviet.userservice.util.TokenEpochStore;
+import com.vuviet.userservice.util.TokenRevocationList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Toàn bộ JwtAuthenticationFilter trên một request giả: đọc header, parse token (qua cache), kiểm tra thu hồi
+//và phiên bản token, dựng Authentication. "missing" là request không có token, chi phí nền của filter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthFilterBenchmark {
+    private static final FilterChain NO_OP_CHAIN=(request, response) -> {};
+
+    @Param({"valid", "missing", "invalid"})
+    public String scenario;
+
+    private JwtAuthenticationFilter filter;
+
+    private String authorization;
+
+    @Setup
+    public void setup(){
+        User user=BenchmarkFixtures.user();
+        //Cùng một JwtUtil để ký và parse, mỗi lần gọi BenchmarkFixtures.jwtUtil() sinh key mới
+        JwtUtil jwtUtil=BenchmarkFixtures.jwtUtil();
+
+        TokenRevocationList revocationList=new TokenRevocationList();
+        ReflectionTestUtils.setField(revocationList, "bloomBits", 1048576);
+        revocationList.init();
+
+        //Không có DB: phiên bản token của user được nạp sẵn như sau khi login
+        TokenEpochStore tokenEpochs=new TokenEpochStore(null, new PrincipalCache());
+        tokenEpochs.observe(user.getId(), user.getTokenVersion());
+
+        filter=new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "revocationList", revocationList);
+        ReflectionTestUtils.setField(filter, "tokenEpochs", tokenEpochs);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.initMetrics();
+
+        String token=jwtUtil.generateToken(user);
+        switch (scenario){
+            case "valid" -> authorization="Bearer "+token;
+            case "invalid" -> authorization="Bearer "+token.substring(0, token.length()-4)+"AAAA";
+            default -> authorization=null;
+        }
+    }
+
+    @Benchmark
+    public Object doFilter() throws ServletException, IOException {
+        //OncePerRequestFilter đánh dấu request đã đi qua, nên mỗi lần cần request mới
+        MockHttpServletRequest request=new MockHttpServletRequest("GET", "/api/auth/me");
+        if(authorization!=null){
+            request.addHeader("Authorization", authorization);
+        }
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+            return SecurityContextHolder.getContext().getAuthentication();
+        }finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
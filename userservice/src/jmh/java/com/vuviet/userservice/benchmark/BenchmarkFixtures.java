@@ -0,0 +1,59 @@
+package com.vuviet.userservice.benchmark;
+
+import com.vuviet.userservice.entity.Role;
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.util.JwtKey;
+import com.vuviet.userservice.util.JwtKeyStore;
+import com.vuviet.userservice.util.JwtUtil;
+import com.vuviet.userservice.util.VerifiedTokenCache;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.time.Instant;
+import java.util.List;
+
+//Dựng các bean cần cho benchmark mà không cần Spring context
+final class BenchmarkFixtures {
+    //Secret HMAC của code cũ, chỉ dùng cho các benchmark legacy
+    static final String SECRET="myVerySecretKeyForJWTTokenGeneration1234567890abcdefghijklmnopqrstuvwxyz";
+
+    private BenchmarkFixtures(){
+    }
+
+    static JwtUtil jwtUtil(){
+        VerifiedTokenCache cache=new VerifiedTokenCache();
+        ReflectionTestUtils.setField(cache, "maxSize", 10000);
+        JwtUtil jwtUtil=new JwtUtil(cache, keyStore(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 900000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 2592000000L);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    //Key store không cần DB, chỉ giữ một key RS256 sinh sẵn
+    static JwtKeyStore keyStore(){
+        KeyPair keyPair=Keys.keyPairFor(SignatureAlgorithm.RS256);
+        JwtKeyStore keyStore=new JwtKeyStore(null, null);
+        keyStore.apply(List.of(new JwtKey("bench", SignatureAlgorithm.RS256,
+                keyPair.getPrivate(), keyPair.getPublic(), Instant.EPOCH)));
+        return keyStore;
+    }
+
+    static User user(){
+        Role role=new Role();
+        role.setId(1);
+        role.setName("STUDENT");
+        User user=new User();
+        user.setId(42);
+        user.setUsername("student42");
+        user.setPassword("password");
+        user.setEmail("student42@gmail.com");
+        user.setFullName("Student 42");
+        user.setRole(role);
+        user.setIsActive(true);
+        return user;
+    }
+}
@@ -0,0 +1,123 @@
+package com.vuviet.userservice.benchmark;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.util.JwtUtil;
+import com.vuviet.userservice.util.TokenClaims;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//So sánh JwtUtil hiện tại (RS256, key/parser dựng sẵn) với cách cũ dựng lại HMAC key và parser mỗi lần gọi.
+//Nhánh legacy ký và parse token HS256 của riêng nó. hs256* dùng HMAC với key/parser dựng sẵn để tách phần lợi
+//do dựng sẵn (legacy* so với hs256*) khỏi phần chi phí do đổi sang RS256 (hs256* so với JwtUtil)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+    private JwtUtil jwtUtil;
+
+    private User user;
+
+    private String token;
+
+    private String legacyToken;
+
+    private SecretKey hmacKey;
+
+    private JwtParser hmacParser;
+
+    @Setup
+    public void setup(){
+        jwtUtil=BenchmarkFixtures.jwtUtil();
+        user=BenchmarkFixtures.user();
+        token=jwtUtil.generateToken(user);
+        legacyToken=legacyGenerateToken();
+        hmacKey=Keys.hmacShaKeyFor(BenchmarkFixtures.SECRET.getBytes());
+        hmacParser=Jwts.parserBuilder().setSigningKey(hmacKey).build();
+    }
+
+    @Benchmark
+    public String generateToken(){
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String legacyGenerateToken(){
+        //Code cũ dùng ES256 với HMAC key nên luôn lỗi, ở đây dùng thuật toán khớp với key
+        return signHmac(Keys.hmacShaKeyFor(BenchmarkFixtures.SECRET.getBytes()));
+    }
+
+    @Benchmark
+    public String hs256GenerateToken(){
+        return signHmac(hmacKey);
+    }
+
+    @Benchmark
+    public Boolean validateToken(){
+        return jwtUtil.validateToken(token);
+    }
+
+    @Benchmark
+    public TokenClaims parseTokenCached(){
+        return jwtUtil.parseToken(token);
+    }
+
+    //Filter cũ: extractUsername, validateToken, extractRole, mỗi lần dựng lại key và parser
+    @Benchmark
+    public String legacyFilterParse(){
+        String username=legacyParse(legacyToken).getSubject();
+        legacyParse(legacyToken);
+        String role=(String) legacyParse(legacyToken).get("role");
+        return username+role;
+    }
+
+    //Cùng token HS256 nhưng parse một lần bằng parser dựng sẵn
+    @Benchmark
+    public String hs256FilterParse(){
+        Claims claims=hmacParser.parseClaimsJws(legacyToken).getBody();
+        return claims.getSubject()+claims.get("role");
+    }
+
+    private String signHmac(SecretKey key){
+        Map<String, Object> claims=new HashMap<>();
+        claims.put("id", user.getId());
+        claims.put("email", user.getEmail());
+        claims.put("role", user.getRole().getName());
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(user.getUsername())
+                .setIssuedAt(new Date(System.currentTimeMillis()))
+                .setExpiration(new Date(System.currentTimeMillis()+900000))
+                .signWith(key, SignatureAlgorithm.forSigningKey(key))
+                .compact();
+    }
+
+    private static Claims legacyParse(String token){
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(BenchmarkFixtures.SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,51 @@
+package com.vuviet.userservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+//Thời gian một lần BCrypt theo cost factor. SecurityConfig dùng mặc định của BCryptPasswordEncoder (10),
+//mỗi lần tăng cost thì thời gian gấp đôi, kết quả dùng để chọn cost và kích thước pool của BoundedPasswordEncoder
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+    private static final String PASSWORD="password";
+
+    @Param({"8", "10", "12"})
+    public int cost;
+
+    private BCryptPasswordEncoder encoder;
+
+    private String hash;
+
+    @Setup
+    public void setup(){
+        encoder=new BCryptPasswordEncoder(cost);
+        hash=encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode(){
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches(){
+        return encoder.matches(PASSWORD, hash);
+    }
+}
@@ -0,0 +1,67 @@
+package com.vuviet.userservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.response.JwtResponse;
+import com.vuviet.userservice.entity.response.UserResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+//Chi phí ghi body JSON của login (JwtResponse) và /me (UserResponse), cùng User.getAuthorities() mà mỗi lần
+//xác thực đều gọi. ObjectMapper dựng giống Spring Boot (có module java.time)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    private JwtResponse jwtResponse;
+
+    private UserResponse userResponse;
+
+    @Setup
+    public void setup(){
+        objectMapper=Jackson2ObjectMapperBuilder.json().build();
+        user=BenchmarkFixtures.user();
+        String accessToken=BenchmarkFixtures.jwtUtil().generateToken(user);
+        jwtResponse=new JwtResponse(accessToken, "8f14e45fceea167a5a36dedd4bea2543", user.getId(),
+                user.getUsername(), user.getEmail(), user.getRole().getName());
+        userResponse=new UserResponse(user.getId(), user.getUsername(), user.getEmail(), user.getFullName(),
+                user.getRole().getName(), user.getIsActive(), LocalDateTime.of(2024, 1, 1, 8, 0));
+    }
+
+    @Benchmark
+    public byte[] serializeJwtResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(jwtResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeUserResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userResponse);
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities(){
+        return user.getAuthorities();
+    }
+}
@@ -0,0 +1,75 @@
+package com.vuviet.userservice.benchmark;
+
+import com.vuviet.userservice.entity.response.UserSuggestionResponse;
+import com.vuviet.userservice.util.UserTypeaheadIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Truy vấn top-10 trên index 1 triệu user, họ tên tiếng Việt sinh ngẫu nhiên. Delta giữ một lượng user mới như lúc chưa compact
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class UserTypeaheadBenchmark {
+    private static final String[] LAST_NAMES={"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Phan", "Vũ", "Võ", "Đặng", "Bùi", "Đỗ"};
+
+    private static final String[] MIDDLE_NAMES={"Văn", "Thị", "Hữu", "Đức", "Minh", "Ngọc", "Thanh", "Quang"};
+
+    private static final String[] FIRST_NAMES={"An", "Bình", "Châu", "Dũng", "Giang", "Hà", "Hải", "Hùng", "Khoa", "Linh", "Long", "Mai", "Nam", "Phúc", "Quân", "Sơn", "Tâm", "Thảo", "Trang", "Tuấn", "Việt", "Yến"};
+
+    @Param({"1000000"})
+    public int users;
+
+    @Param({"256", "1000"})
+    public int deltaSize;
+
+    @Param({"student12345", "nguyen", "tuan", "s", "zzz"})
+    public String query;
+
+    private UserTypeaheadIndex index;
+
+    @Setup
+    public void setup(){
+        Random random=new Random(42);
+        List<UserSuggestionResponse> rows=new ArrayList<>(users);
+        for(int i=1;i<=users;i++){
+            rows.add(user(i, random));
+        }
+        index=new UserTypeaheadIndex(null);
+        ReflectionTestUtils.setField(index, "compactThreshold", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(index, "maxScan", 2000);
+        index.replaceAll(rows);
+        for(int i=users+1;i<=users+deltaSize;i++){
+            index.put(user(i, random));
+        }
+    }
+
+    @Benchmark
+    public List<UserSuggestionResponse> searchTop10(){
+        return index.search(query, 10);
+    }
+
+    private static UserSuggestionResponse user(long id, Random random){
+        String fullName=LAST_NAMES[random.nextInt(LAST_NAMES.length)]+" "
+                +MIDDLE_NAMES[random.nextInt(MIDDLE_NAMES.length)]+" "
+                +FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        return new UserSuggestionResponse(id, "student"+id, "student"+id+"@gmail.com", fullName);
+    }
+}
@@ -0,0 +1,63 @@
+package com.vuviet.userservice.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Lưu toàn bộ latency (nanos) của một endpoint để tính percentile chính xác sau khi chạy xong.
+//Một lần chạy vài trăm nghìn request chỉ tốn vài MB, không cần histogram
+final class LatencyRecorder {
+    private long[] latencies=new long[1024];
+
+    private int count;
+
+    private long errors;
+
+    private final Map<Integer, Long> statuses=new TreeMap<>();
+
+    //status 0 = lỗi kết nối hoặc timeout, không có response
+    synchronized void record(long latencyNanos, int status){
+        if(count==latencies.length){
+            latencies=Arrays.copyOf(latencies, count*2);
+        }
+        latencies[count++]=latencyNanos;
+        if(status<200 || status>=300){
+            errors++;
+        }
+        statuses.merge(status, 1L, Long::sum);
+    }
+
+    synchronized Map<String, Object> summary(double seconds){
+        long[] sorted=Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long sum=0;
+        for(long latency: sorted){
+            sum+=latency;
+        }
+        Map<String, Object> summary=new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", round(count/seconds));
+        summary.put("meanMs", count==0?0:round(sum/(double) count/1_000_000));
+        summary.put("p50Ms", percentile(sorted, 0.50));
+        summary.put("p99Ms", percentile(sorted, 0.99));
+        summary.put("p999Ms", percentile(sorted, 0.999));
+        summary.put("maxMs", count==0?0:round(sorted[count-1]/1_000_000.0));
+        summary.put("statuses", new LinkedHashMap<>(statuses));
+        return summary;
+    }
+
+    //Nearest-rank
+    private static double percentile(long[] sorted, double quantile){
+        if(sorted.length==0){
+            return 0;
+        }
+        int rank=(int) Math.ceil(quantile*sorted.length);
+        return round(sorted[Math.max(0, rank-1)]/1_000_000.0);
+    }
+
+    private static double round(double value){
+        return Math.round(value*1000)/1000.0;
+    }
+}
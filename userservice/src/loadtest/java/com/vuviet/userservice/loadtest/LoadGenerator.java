@@ -0,0 +1,244 @@
+package com.vuviet.userservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Sinh tải theo mô hình mở: request được phát theo lịch cố định (rate/s) bất kể các request trước đã xong hay chưa,
+//giống người dùng thật ùa vào lúc cao điểm. Latency tính từ thời điểm lẽ ra phải gửi, nên khi server chậm
+//thời gian chờ trong hàng cũng được tính (không bị coordinated omission)
+@Slf4j
+class LoadGenerator {
+    //Số phiên đăng nhập giữ lại để gọi me/refresh/logout
+    private static final int MAX_SESSIONS=10000;
+
+    private static final Duration REQUEST_TIMEOUT=Duration.ofSeconds(30);
+
+    enum Operation {
+        LOGIN("POST /api/auth/login"),
+        ME("GET /api/auth/me"),
+        REFRESH("POST /api/auth/refresh"),
+        REGISTER("POST /api/auth/register"),
+        LOGOUT("POST /api/auth/logout");
+
+        private final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    private record Session(String accessToken, String refreshToken) {
+    }
+
+    private final URI baseUri;
+
+    private final LoadTestSettings settings;
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpClient client=HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Map<Operation, LatencyRecorder> recorders=new EnumMap<>(Operation.class);
+
+    private final ArrayBlockingQueue<Session> sessions=new ArrayBlockingQueue<>(MAX_SESSIONS);
+
+    private final AtomicInteger outstanding=new AtomicInteger();
+
+    private final AtomicInteger registrations=new AtomicInteger();
+
+    //Lượt không gửi được vì số request đang chờ đã chạm max-outstanding, tức server không theo kịp
+    private final LongAdder dropped=new LongAdder();
+
+    LoadGenerator(URI baseUri, LoadTestSettings settings, ObjectMapper objectMapper) {
+        this.baseUri = baseUri;
+        this.settings = settings;
+        this.objectMapper = objectMapper;
+        for(Operation operation: Operation.values()){
+            recorders.put(operation, new LatencyRecorder());
+        }
+    }
+
+    Map<String, Object> run() throws InterruptedException {
+        long interval=(long) (TimeUnit.SECONDS.toNanos(1)/settings.rate());
+        long start=System.nanoTime();
+        long measureFrom=start+TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+        long end=measureFrom+TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+
+        log.warn("Load test: {} req/s for {} s after {} s warmup", settings.rate(), settings.durationSeconds(), settings.warmupSeconds());
+        for(long scheduled=start;scheduled<end;scheduled+=interval){
+            long wait=scheduled-System.nanoTime();
+            if(wait>0){
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured=scheduled>=measureFrom;
+            if(outstanding.get()>=settings.maxOutstanding()){
+                if(measured){
+                    dropped.increment();
+                }
+                continue;
+            }
+            fire(scheduled, measured);
+        }
+
+        long deadline=System.nanoTime()+TimeUnit.SECONDS.toNanos(settings.drainTimeoutSeconds());
+        while (outstanding.get()>0 && System.nanoTime()<deadline){
+            Thread.sleep(10);
+        }
+        return summary();
+    }
+
+    private void fire(long scheduled, boolean measured){
+        Operation operation=pick();
+        Session session=null;
+        if(operation==Operation.ME || operation==Operation.REFRESH || operation==Operation.LOGOUT){
+            session=sessions.poll();
+            //Chưa có phiên nào thì đăng nhập trước
+            if(session==null){
+                operation=Operation.LOGIN;
+            }
+        }
+
+        Operation current=operation;
+        Session used=session;
+        outstanding.incrementAndGet();
+        client.sendAsync(request(current, used), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    try {
+                        int status=error==null?response.statusCode():0;
+                        if(measured){
+                            recorders.get(current).record(System.nanoTime()-scheduled, status);
+                        }
+                        if(error==null){
+                            onResponse(current, used, response);
+                        }
+                    }finally {
+                        outstanding.decrementAndGet();
+                    }
+                });
+    }
+
+    private Operation pick(){
+        int value=ThreadLocalRandom.current().nextInt(settings.totalWeight());
+        if((value-=settings.loginWeight())<0){
+            return Operation.LOGIN;
+        }
+        if((value-=settings.meWeight())<0){
+            return Operation.ME;
+        }
+        if((value-=settings.refreshWeight())<0){
+            return Operation.REFRESH;
+        }
+        if((value-=settings.registerWeight())<0){
+            return Operation.REGISTER;
+        }
+        return Operation.LOGOUT;
+    }
+
+    private HttpRequest request(Operation operation, Session session){
+        HttpRequest.Builder builder=HttpRequest.newBuilder().timeout(REQUEST_TIMEOUT);
+        switch (operation){
+            case LOGIN -> {
+                String username=UserSeeder.username(ThreadLocalRandom.current().nextInt(settings.users()));
+                builder.uri(baseUri.resolve("/api/auth/login"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"username\":\""+username+"\",\"password\":\""+UserSeeder.PASSWORD+"\",\"deviceLabel\":\"loadtest\"}"));
+            }
+            case REGISTER -> {
+                String username="reg"+registrations.incrementAndGet();
+                builder.uri(baseUri.resolve("/api/auth/register"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"username\":\""+username+"\",\"password\":\""+UserSeeder.PASSWORD+"\",\"email\":\""
+                                        +username+"@loadtest.local\",\"fullName\":\"Registered "+username+"\"}"));
+            }
+            case ME -> builder.uri(baseUri.resolve("/api/auth/me"))
+                    .header("Authorization", "Bearer "+session.accessToken())
+                    .GET();
+            case REFRESH -> builder.uri(baseUri.resolve("/api/auth/refresh"))
+                    .header("Cookie", "refreshToken="+session.refreshToken())
+                    .POST(HttpRequest.BodyPublishers.noBody());
+            case LOGOUT -> builder.uri(baseUri.resolve("/api/auth/logout"))
+                    .header("Authorization", "Bearer "+session.accessToken())
+                    .header("Cookie", "refreshToken="+session.refreshToken())
+                    .POST(HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    //Giữ lại phiên còn dùng được; logout và request lỗi thì bỏ phiên
+    private void onResponse(Operation operation, Session session, HttpResponse<String> response){
+        if(response.statusCode()!=200){
+            return;
+        }
+        switch (operation){
+            case LOGIN -> {
+                JsonNode body=readBody(response);
+                if(body!=null){
+                    sessions.offer(new Session(body.path("accessToken").asText(), body.path("refreshToken").asText()));
+                }
+            }
+            case REFRESH -> {
+                JsonNode body=readBody(response);
+                if(body!=null){
+                    sessions.offer(new Session(body.path("accessToken").asText(), session.refreshToken()));
+                }
+            }
+            case ME -> sessions.offer(session);
+            default -> {
+            }
+        }
+    }
+
+    private JsonNode readBody(HttpResponse<String> response){
+        try {
+            return objectMapper.readTree(response.body());
+        }catch (Exception e){
+            log.warn("Unreadable response body: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, Object> summary(){
+        double seconds=settings.durationSeconds();
+        long total=0;
+        Map<String, Object> endpoints=new LinkedHashMap<>();
+        for(Operation operation: Operation.values()){
+            Map<String, Object> endpoint=recorders.get(operation).summary(seconds);
+            total+=((Number) endpoint.get("requests")).longValue();
+            endpoints.put(operation.endpoint, endpoint);
+        }
+
+        Map<String, Object> summary=new LinkedHashMap<>();
+        summary.put("threading", settings.threading());
+        summary.put("hikariPoolSize", settings.poolSize());
+        summary.put("users", settings.users());
+        summary.put("targetRatePerSecond", settings.rate());
+        summary.put("achievedRatePerSecond", Math.round(total/seconds*1000)/1000.0);
+        summary.put("durationSeconds", settings.durationSeconds());
+        summary.put("warmupSeconds", settings.warmupSeconds());
+        summary.put("dropped", dropped.sum());
+        summary.put("unfinished", outstanding.get());
+        summary.put("endpoints", endpoints);
+        return summary;
+    }
+}
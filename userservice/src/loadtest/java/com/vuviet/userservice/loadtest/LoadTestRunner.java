@@ -0,0 +1,72 @@
+package com.vuviet.userservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuviet.userservice.UserserviceApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Map;
+
+//Chạy userservice trên H2 (MySQL mode), nạp sẵn user rồi bắn tải hỗn hợp register/login/refresh/me/logout vào chính nó.
+//Chỉ dùng localhost, không cần MySQL hay mạng. Kết quả (p50/p99/p999, throughput theo endpoint) ghi ra JSON ở loadtest.result
+//Chạy: mvn -Ploadtest test-compile exec:exec -Dloadtest.rate=500 -Dloadtest.users=50000
+//So sánh platform thread và virtual thread trên đúng stack thật (Tomcat, Hikari, service): chạy hai lần cùng tải,
+//-Dloadtest.threading=platform rồi -Dloadtest.threading=virtual (bật profile virtual, cần Java 21+).
+//Hikari giữ cố định ở spring.datasource.hikari.maximum-pool-size để hai lần chạy so được với nhau
+@Slf4j
+public class LoadTestRunner {
+    static final String PLATFORM="platform";
+
+    static final String VIRTUAL="virtual";
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context=new SpringApplicationBuilder(UserserviceApplication.class)
+                .profiles(profiles(args))
+                .run(args);
+        int exitCode=0;
+        try {
+            LoadTestSettings settings=LoadTestSettings.from(context.getEnvironment());
+            new UserSeeder(context.getBean(JdbcTemplate.class), context.getBean(PasswordEncoder.class)).seed(settings.users());
+
+            String port=context.getEnvironment().getProperty("local.server.port");
+            ObjectMapper objectMapper=context.getBean(ObjectMapper.class);
+            Map<String, Object> summary=new LoadGenerator(URI.create("http://127.0.0.1:"+port), settings, objectMapper).run();
+
+            String json=objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(summary);
+            if(settings.result().getParent()!=null){
+                Files.createDirectories(settings.result().getParent());
+            }
+            Files.writeString(settings.result(), json);
+            System.out.println(json);
+            log.warn("Load test summary written to {}", settings.result().toAbsolutePath());
+        }catch (Exception e){
+            log.error("Load test failed", e);
+            exitCode=1;
+        }finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    //Dưới Java 21 Spring Boot bỏ qua spring.threads.virtual.enabled mà không báo gì, lần chạy "virtual" sẽ đo lại
+    //platform thread. Dừng luôn thay vì ghi ra kết quả sai nhãn
+    private static String[] profiles(String[] args){
+        String threading=new SimpleCommandLinePropertySource(args).getProperty("loadtest.threading");
+        if(threading==null || PLATFORM.equals(threading)){
+            return new String[]{"h2", "loadtest"};
+        }
+        if(!VIRTUAL.equals(threading)){
+            throw new IllegalArgumentException("loadtest.threading must be platform or virtual: "+threading);
+        }
+        if(Runtime.version().feature()<21){
+            throw new IllegalStateException("loadtest.threading=virtual needs Java 21+, running on "+Runtime.version());
+        }
+        return new String[]{"h2", "loadtest", VIRTUAL};
+    }
+}
@@ -0,0 +1,33 @@
+package com.vuviet.userservice.loadtest;
+
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+
+//Tham số của một lần chạy, đọc từ application-loadtest.properties hoặc dòng lệnh (--loadtest.rate=500)
+record LoadTestSettings(String threading, int poolSize, int users, double rate, int durationSeconds, int warmupSeconds,
+                        int maxOutstanding, int drainTimeoutSeconds, Path result,
+                        int loginWeight, int meWeight, int refreshWeight, int registerWeight, int logoutWeight) {
+
+    static LoadTestSettings from(Environment env){
+        return new LoadTestSettings(
+                env.getProperty("loadtest.threading", LoadTestRunner.PLATFORM),
+                env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10),
+                env.getProperty("loadtest.users", Integer.class, 10000),
+                env.getProperty("loadtest.rate", Double.class, 200.0),
+                env.getProperty("loadtest.duration-seconds", Integer.class, 60),
+                env.getProperty("loadtest.warmup-seconds", Integer.class, 10),
+                env.getProperty("loadtest.max-outstanding", Integer.class, 5000),
+                env.getProperty("loadtest.drain-timeout-seconds", Integer.class, 30),
+                Path.of(env.getProperty("loadtest.result", "target/loadtest-result.json")),
+                env.getProperty("loadtest.mix.login", Integer.class, 40),
+                env.getProperty("loadtest.mix.me", Integer.class, 30),
+                env.getProperty("loadtest.mix.refresh", Integer.class, 15),
+                env.getProperty("loadtest.mix.register", Integer.class, 10),
+                env.getProperty("loadtest.mix.logout", Integer.class, 5));
+    }
+
+    int totalWeight(){
+        return loginWeight+meWeight+refreshWeight+registerWeight+logoutWeight;
+    }
+}
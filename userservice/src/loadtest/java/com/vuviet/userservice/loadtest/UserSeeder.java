@@ -0,0 +1,54 @@
+package com.vuviet.userservice.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//Nạp sẵn user cho load test bằng JDBC batch, không đi qua /register.
+//Mọi user dùng chung một mật khẩu nên chỉ băm BCrypt một lần; login sau đó vẫn chạy BCrypt đầy đủ như production
+@Slf4j
+class UserSeeder {
+    static final String PASSWORD="loadtest-password";
+
+    private static final String INSERT_SQL="INSERT INTO users (username, password, email, full_name, role_id, is_active, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BATCH_SIZE=1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PasswordEncoder passwordEncoder;
+
+    UserSeeder(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    static String username(int index){
+        return "load"+index;
+    }
+
+    void seed(int count){
+        long startedAt=System.currentTimeMillis();
+        String hash=passwordEncoder.encode(PASSWORD);
+        Integer roleId=jdbcTemplate.queryForObject("SELECT id FROM roles WHERE name = 'STUDENT'", Integer.class);
+        Timestamp now=Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> batch=new ArrayList<>(BATCH_SIZE);
+        for(int i=0;i<count;i++){
+            batch.add(new Object[]{username(i), hash, username(i)+"@loadtest.local", "Load Test "+i, roleId, true, now, now});
+            if(batch.size()==BATCH_SIZE){
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty()){
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        }
+        log.warn("Seeded {} users in {} ms", count, System.currentTimeMillis()-startedAt);
+    }
+}
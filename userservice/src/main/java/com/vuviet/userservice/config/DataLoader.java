@@ -4,6 +4,7 @@ import com.vuviet.userservice.entity.Role;
 import com.vuviet.userservice.entity.User;
 import com.vuviet.userservice.repository.RoleRepository;
 import com.vuviet.userservice.repository.UserRepository;
+import com.vuviet.userservice.util.RoleRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -18,16 +19,20 @@ public class DataLoader implements CommandLineRunner {
 
     private final PasswordEncoder passwordEncoderl;
 
-    public DataLoader(RoleRepository roleRepository, UserRepository userRepository, PasswordEncoder passwordEncoderl) {
+    private final RoleRegistry roleRegistry;
+
+    public DataLoader(RoleRepository roleRepository, UserRepository userRepository, PasswordEncoder passwordEncoderl, RoleRegistry roleRegistry) {
         this.roleRepository = roleRepository;
         this.userRepository = userRepository;
         this.passwordEncoderl = passwordEncoderl;
+        this.roleRegistry = roleRegistry;
     }
 
 
     @Override
     public void run(String... args) throws Exception {
         loadRoles();
+        roleRegistry.reload();
         loadDefaultAdmin();
     }
 
@@ -55,12 +60,19 @@ public class DataLoader implements CommandLineRunner {
             roleRepository.save(adminRole);
             log.info("Created ADMIN role");
         }
+
+        if(!roleRepository.existsByName("SERVICE")){
+            Role serviceRole=new Role();
+            serviceRole.setName("SERVICE");
+            serviceRole.setDescription("Service role - other services reading user data (batch lookup, change feed)");
+            roleRepository.save(serviceRole);
+            log.info("Created SERVICE role");
+        }
     }
 
     private void loadDefaultAdmin(){
         if(!userRepository.existsByUsername("admin")){
-            Role adminRole=roleRepository.findByName("ADMIN")
-                    .orElseThrow();
+            Role adminRole=roleRepository.getReferenceById(roleRegistry.getByName("ADMIN").getId());
             User admin=new User();
             admin.setUsername("admin");
             admin.setPassword(passwordEncoderl.encode("123456"));
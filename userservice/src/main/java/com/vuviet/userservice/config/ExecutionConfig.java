@@ -0,0 +1,53 @@
+package com.vuviet.userservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+
+//Cấu hình thread cho @Async/@Scheduled, dùng chung cho cả chế độ platform thread và virtual thread
+//(bật virtual thread: spring.threads.virtual.enabled=true, cần Java 21).
+//Proxy theo class: bean có @Async mà implement interface (MeterBinder) vẫn inject được theo class và giữ được @Scheduled
+@Configuration
+@EnableAsync(proxyTargetClass = true)
+@Slf4j
+public class ExecutionConfig {
+    //Spring Boot gắn TaskDecorator vào executor mặc định của @Async,
+    //SecurityContext của thread gọi được chuyển sang thread chạy task
+    @Bean
+    public TaskDecorator securityContextTaskDecorator(){
+        return runnable -> new DelegatingSecurityContextRunnable(runnable);
+    }
+
+    //Driver MySQL trước 9.0 dùng synchronized quanh I/O, virtual thread bị pin vào carrier thread
+    //và mất tác dụng, nên kiểm tra khi khởi động ở chế độ virtual thread
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ApplicationRunner virtualThreadPinningGuard(DataSource dataSource,
+                                                       @Value("${app.virtual-threads.allow-pinning-driver:false}") boolean allowPinningDriver){
+        return args -> {
+            try (Connection connection=dataSource.getConnection()){
+                DatabaseMetaData metaData=connection.getMetaData();
+                String driver=metaData.getDriverName()+" "+metaData.getDriverVersion();
+                if(metaData.getDriverName().contains("MySQL") && metaData.getDriverMajorVersion()<9){
+                    if(!allowPinningDriver){
+                        throw new IllegalStateException("Virtual threads require MySQL Connector/J 9.0+ to avoid pinning, found "+driver);
+                    }
+                    log.warn("Virtual threads enabled with {}, JDBC calls may pin carrier threads", driver);
+                }else{
+                    log.info("Virtual threads enabled, JDBC driver: {}", driver);
+                }
+            }
+        };
+    }
+}
@@ -2,7 +2,10 @@ package com.vuviet.userservice.config;
 
 import com.vuviet.userservice.filter.JwtAuthenticationFilter;
 import com.vuviet.userservice.service.UserDetailsServiceImpl;
+import com.vuviet.userservice.util.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -32,16 +35,33 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    //0 = số core
+    @Value("${security.password.pool-size:0}")
+    private int passwordPoolSize;
+
+    //Số thao tác được chờ cho mỗi thread hash, vượt quá thì trả 503 ngay
+    @Value("${security.password.max-queued-per-thread:4}")
+    private int passwordMaxQueuedPerThread;
+
+    @Value("${security.password.wait-timeout-ms:5000}")
+    private long passwordWaitTimeoutMs;
+
+    @Value("${security.password.retry-after-seconds:2}")
+    private int passwordRetryAfterSeconds;
+
+    //BCrypt chạy trên pool riêng có giới hạn, không chiếm request thread
     @Bean
-    public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(MeterRegistry meterRegistry){
+        int poolSize=passwordPoolSize>0?passwordPoolSize:Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, passwordMaxQueuedPerThread,
+                passwordWaitTimeoutMs, passwordRetryAfterSeconds, meterRegistry);
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider(){
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder){
         DaoAuthenticationProvider authenticationProvider=new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(userDetailsService);
-        authenticationProvider.setPasswordEncoder(passwordEncoder());
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
         return authenticationProvider;
     }
 
@@ -51,15 +71,18 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception{
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider) throws Exception{
         http.csrf(csrf->csrf.disable())
                 .sessionManagement(session->session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth->auth
                         .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/actuator/**").permitAll()
+                        //Health để load balancer/k8s probe gọi không cần token. Metrics và prometheus lộ số user, tên endpoint,
+                        //trạng thái pool... nên chỉ admin được đọc
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated());
 //                .cors(cors->cors.configurationSource(corsConfigurationSource()));// Thêm CORS configuration cho cookies
-        http.authenticationProvider(authenticationProvider());
+        http.authenticationProvider(authenticationProvider);
         http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
@@ -0,0 +1,28 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.entity.response.ThrottledKeyResponse;
+import com.vuviet.userservice.util.LoginRateLimiter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+    private final LoginRateLimiter loginRateLimiter;
+
+    public AdminController(LoginRateLimiter loginRateLimiter) {
+        this.loginRateLimiter = loginRateLimiter;
+    }
+
+    //Các username/IP đang bị chặn login
+    @GetMapping("/login-throttle")
+    public ResponseEntity<List<ThrottledKeyResponse>> getThrottledLogins(){
+        return ResponseEntity.ok(loginRateLimiter.getThrottledKeys());
+    }
+}
@@ -0,0 +1,139 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.entity.request.UserFileFormat;
+import com.vuviet.userservice.entity.request.UserSearchParams;
+import com.vuviet.userservice.entity.response.BulkImportResponse;
+import com.vuviet.userservice.entity.response.CursorPageResponse;
+import com.vuviet.userservice.entity.response.UserResponse;
+import com.vuviet.userservice.entity.response.UserSuggestionResponse;
+import com.vuviet.userservice.exception.ServiceBusyException;
+import com.vuviet.userservice.service.UserImportService;
+import com.vuviet.userservice.service.UserService;
+import com.vuviet.userservice.util.UserTypeaheadIndex;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/admin/users")
+@PreAuthorize("hasRole('ADMIN')")
+@Slf4j
+public class AdminUserController {
+    private static final int MAX_PAGE_SIZE=100;
+
+    private static final int MAX_SUGGESTIONS=50;
+
+    private final UserService userService;
+
+    private final UserImportService userImportService;
+
+    private final UserTypeaheadIndex typeaheadIndex;
+
+    public AdminUserController(UserService userService, UserImportService userImportService, UserTypeaheadIndex typeaheadIndex) {
+        this.userService = userService;
+        this.userImportService = userImportService;
+        this.typeaheadIndex = typeaheadIndex;
+    }
+
+    //Gợi ý user theo tiền tố username, email hoặc từng từ trong họ tên, trả lời từ index trong bộ nhớ
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<UserSuggestionResponse>> typeahead(@RequestParam String q,
+                                                                  @RequestParam(defaultValue = "10") int limit){
+        return ResponseEntity.ok(typeaheadIndex.search(q, Math.max(1, Math.min(limit, MAX_SUGGESTIONS))));
+    }
+
+    //Tìm kiếm user, mới nhất trước. Trang sau lấy bằng nextCursor của trang trước
+    @GetMapping
+    public ResponseEntity<?> searchUsers(@ModelAttribute UserSearchParams params,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int size,
+                                         @RequestParam(defaultValue = "false") boolean includeTotal){
+        try {
+            int pageSize=Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            CursorPageResponse<UserResponse> page=userService.searchUsers(params, cursor, pageSize, includeTotal);
+            return ResponseEntity.ok(page);
+        }catch (RuntimeException e){
+            log.error("User search failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    //Đọc thẳng body của request (CSV hoặc NDJSON), không đưa cả file vào bộ nhớ
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> importUsers(HttpServletRequest request){
+        try {
+            UserFileFormat format=UserFileFormat.fromContentType(request.getContentType());
+            BulkImportResponse result=userImportService.importUsers(request.getInputStream(), format);
+            return ResponseEntity.ok(result);
+        }catch (ServiceBusyException e){
+            log.warn("Bulk import rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        }catch (IOException e){
+            log.error("Bulk import failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to read import file");
+        }catch (RuntimeException e){
+            log.error("Bulk import failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    //Xuất user ra CSV hoặc NDJSON, ghi từng dòng vào response trong lúc đọc DB. gzip=true nén bằng Content-Encoding
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(defaultValue = "csv") String format,
+                            @RequestParam(required = false) Boolean isActive,
+                            @RequestParam(required = false) String role,
+                            @RequestParam(defaultValue = "false") boolean gzip,
+                            HttpServletResponse response) throws IOException {
+        UserFileFormat fileFormat;
+        try {
+            fileFormat=UserFileFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        }catch (IllegalArgumentException e){
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Unsupported export format: "+format);
+            return;
+        }
+
+        response.setContentType(fileFormat.getMediaType()+";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"users."+fileFormat.name().toLowerCase(Locale.ROOT)+"\"");
+        if(gzip){
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        OutputStream output=gzip?new GZIPOutputStream(response.getOutputStream(), 8192):response.getOutputStream();
+        try {
+            long count=userService.exportUsers(isActive, role, fileFormat, output);
+            log.info("Export finished: {} users", count);
+        }catch (RuntimeException e){
+            log.error("User export failed: {}", e.getMessage());
+            //Chưa gửi dữ liệu nào thì còn trả được lỗi, nếu đã gửi một phần thì chỉ có thể cắt kết nối
+            if(response.isCommitted()){
+                throw e;
+            }
+            response.reset();
+            response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+            return;
+        }
+        if(output instanceof GZIPOutputStream gzipOutput){
+            gzipOutput.finish();
+        }
+        output.flush();
+    }
+}
@@ -1,11 +1,13 @@
 package com.vuviet.userservice.controller;
 
-import com.vuviet.userservice.entity.User;
 import com.vuviet.userservice.entity.request.LoginDto;
 import com.vuviet.userservice.entity.request.RegisterDto;
 import com.vuviet.userservice.entity.response.JwtResponse;
 import com.vuviet.userservice.entity.response.UserResponse;
+import com.vuviet.userservice.exception.ServiceBusyException;
 import com.vuviet.userservice.service.AuthService;
+import com.vuviet.userservice.service.UserService;
+import com.vuviet.userservice.util.LoginRateLimiter;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,26 +15,34 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Arrays;
 
 @RestController
-
+@RequestMapping("/api/auth")
 @Slf4j
 public class AuthController {
     private final AuthService authService;
 
+    private final LoginRateLimiter loginRateLimiter;
+
+    private final UserService userService;
+
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
     @Value("${jwt.refresh.expiration}")
     private Long refreshExpiration;
 
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, LoginRateLimiter loginRateLimiter, UserService userService) {
         this.authService = authService;
+        this.loginRateLimiter = loginRateLimiter;
+        this.userService = userService;
     }
 
     @PostMapping("/register")
@@ -41,6 +51,9 @@ public class AuthController {
             String result= authService.register(registerDto);
             log.info("Register successful for user: {}",registerDto.getUsername());
             return ResponseEntity.ok(result);
+        }catch (ServiceBusyException e){
+            log.warn("Registration rejected, server busy: {}", e.getMessage());
+            return serviceBusy(e);
         }catch (RuntimeException e){
             log.error("Registration failed: {}", e.getMessage());
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -48,9 +61,22 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<JwtResponse> login(@Valid @RequestBody LoginDto loginDto, HttpServletResponse response){
+    public ResponseEntity<JwtResponse> login(@Valid @RequestBody LoginDto loginDto, HttpServletRequest request, HttpServletResponse response){
+        //Chặn trước khi chạy BCrypt nếu username hoặc IP đã thử quá nhiều lần
+        long retryAfter=loginRateLimiter.tryAcquire(loginDto.getUsername(), request.getRemoteAddr());
+        if(retryAfter>0){
+            log.warn("Login throttled for user {} from {}", loginDto.getUsername(), request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .build();
+        }
+
         try{
+            if(loginDto.getDeviceLabel()==null){
+                loginDto.setDeviceLabel(getDeviceLabel(request));
+            }
             JwtResponse jwtResponse=authService.login(loginDto);
+            loginRateLimiter.reset(loginDto.getUsername());
 
             Cookie accessTokenCookie=createAccessTokenCookie(jwtResponse.getAccessToken());
             response.addCookie(accessTokenCookie);
@@ -60,6 +86,9 @@ public class AuthController {
 
             log.info("Login successful for user: {} with cookie",loginDto.getUsername());
             return ResponseEntity.ok(jwtResponse);
+        } catch (ServiceBusyException e){
+            log.warn("Login rejected for user {}, server busy: {}", loginDto.getUsername(), e.getMessage());
+            return serviceBusy(e);
         } catch (Exception e){
             log.error("Login failed for user {}: {}", loginDto.getUsername(), e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -83,6 +112,10 @@ public class AuthController {
 
             log.info("Token refresh successful with cookies");
             return ResponseEntity.ok(jwtResponse);
+        }catch (ServiceBusyException e){
+            //Lỗi tạm thời, không trả 400 để client không coi là phiên đã hết
+            log.warn("Token refresh rejected, server busy: {}", e.getMessage());
+            return serviceBusy(e);
         }catch (RuntimeException e){
             log.error("Token refresh failed: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -92,6 +125,12 @@ public class AuthController {
     @PostMapping("/logout")
     public ResponseEntity<String> logout(HttpServletRequest request, HttpServletResponse response){
         try{
+            //Thu hồi access token hiện tại (header hoặc cookie)
+            String accessToken=getAccessToken(request);
+            if(accessToken!=null){
+                authService.revokeAccessToken(accessToken);
+            }
+
             String refreshToken=getRefreshTokenFromCookie(request);
             if(refreshToken!=null){
                 authService.logout(refreshToken);
@@ -110,22 +149,24 @@ public class AuthController {
         }
     }
 
+    //JwtAuthenticationFilter đặt principal là username, đọc profile bằng một query projection
     @GetMapping("/me")
-    public ResponseEntity<UserResponse> getCurrentUser(@AuthenticationPrincipal User user){
-        if(user == null){
+    public ResponseEntity<UserResponse> getCurrentUser(Authentication authentication){
+        //Request ẩn danh thì authentication là null
+        if(authentication == null){
             return ResponseEntity.badRequest().build();
         }
 
-        UserResponse response=new UserResponse(
-                user.getId(),
-                user.getUsername(),
-                user.getEmail(),
-                user.getFullName(),
-                user.getRole().getName(),
-                user.getIsActive(),
-                user.getCreatedAt()
-        );
-        return ResponseEntity.ok(response);
+        return userService.getUserResponse(authentication.getName())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    //503 kèm Retry-After khi server tạm thời quá tải (pool BCrypt đầy...)
+    private <T> ResponseEntity<T> serviceBusy(ServiceBusyException e){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
     }
 
     //Tạo cookie cho access token
@@ -173,6 +214,23 @@ public class AuthController {
         return null;
     }
 
+    private String getAccessToken(HttpServletRequest request){
+        String authorizationHeader=request.getHeader(HttpHeaders.AUTHORIZATION);
+        if(authorizationHeader!=null && authorizationHeader.startsWith("Bearer ")){
+            return authorizationHeader.substring(7);
+        }
+        return getAccessTokenFromCookie(request);
+    }
+
+    //Tên thiết bị mặc định lấy từ User-Agent, cắt theo độ dài cột
+    private String getDeviceLabel(HttpServletRequest request){
+        String userAgent=request.getHeader("User-Agent");
+        if(userAgent==null){
+            return null;
+        }
+        return userAgent.length()>100?userAgent.substring(0,100):userAgent;
+    }
+
     //Xóa tất cả auth cookies
     private void clearAuthCookies(HttpServletResponse response){
         Cookie accessTokenCookie = new Cookie("accessToken", null);
@@ -0,0 +1,63 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.util.JwtKey;
+import com.vuviet.userservice.util.JwtKeyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigInteger;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Publish public key để các service khác tự verify access token
+@RestController
+@RequestMapping("/api/auth/.well-known")
+public class JwksController {
+    private final JwtKeyStore keyStore;
+
+    @Value("${jwt.keys.jwks-max-age:5m}")
+    private Duration jwksMaxAge;
+
+    public JwksController(JwtKeyStore keyStore) {
+        this.keyStore = keyStore;
+    }
+
+    @GetMapping("/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks(){
+        List<Map<String, Object>> keys=new ArrayList<>();
+        for(JwtKey key: keyStore.getPublishedKeys()){
+            if(key.getPublicKey() instanceof RSAPublicKey rsaKey){
+                Map<String, Object> jwk=new LinkedHashMap<>();
+                jwk.put("kty", "RSA");
+                jwk.put("kid", key.getKid());
+                jwk.put("use", "sig");
+                jwk.put("alg", key.getAlgorithm().getValue());
+                jwk.put("n", base64Url(rsaKey.getModulus()));
+                jwk.put("e", base64Url(rsaKey.getPublicExponent()));
+                keys.add(jwk);
+            }
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(jwksMaxAge).cachePublic())
+                .body(Map.of("keys", keys));
+    }
+
+    //JWK dùng Base64url của số nguyên không dấu, bỏ byte 0 ở đầu nếu có
+    private static String base64Url(BigInteger value){
+        byte[] bytes=value.toByteArray();
+        if(bytes.length>1 && bytes[0]==0){
+            bytes=Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,67 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.entity.request.BatchUserLookupDto;
+import com.vuviet.userservice.entity.response.ChangeFeedResponse;
+import com.vuviet.userservice.entity.response.UserChangeResponse;
+import com.vuviet.userservice.entity.response.UserSummaryResponse;
+import com.vuviet.userservice.service.UserService;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/users")
+@Slf4j
+public class UserController {
+    private final UserService userService;
+
+    @Value("${users.batch.max-ids:200}")
+    private int maxIds;
+
+    @Value("${users.changes.max-limit:500}")
+    private int maxChanges;
+
+    public UserController(UserService userService) {
+        this.userService = userService;
+    }
+
+    //Tra cứu nhiều user trong một request cho các service khác, id không tồn tại thì bị bỏ qua
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SERVICE')")
+    public ResponseEntity<?> getUsers(@Valid @RequestBody BatchUserLookupDto request){
+        if(request.getIds().size()>maxIds){
+            return ResponseEntity.badRequest().body("At most "+maxIds+" ids per request");
+        }
+        try {
+            List<UserSummaryResponse> users=userService.getUserSummaries(request.getIds());
+            return ResponseEntity.ok(users);
+        }catch (RuntimeException e){
+            log.error("Batch user lookup failed: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+
+    //Các user thay đổi sau cursor, để service khác đồng bộ bản sao tên/role mà không phải đọc lại toàn bộ
+    @GetMapping("/changes")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SERVICE')")
+    public ResponseEntity<?> getChanges(@RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "100") int limit){
+        try {
+            ChangeFeedResponse<UserChangeResponse> changes=userService.getUserChanges(cursor, Math.max(1, Math.min(limit, maxChanges)));
+            return ResponseEntity.ok(changes);
+        }catch (RuntimeException e){
+            log.error("User change feed failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.vuviet.userservice.entity;
+
+import lombok.Getter;
+
+//Loại sự kiện trong bảng auth_audit
+@Getter
+public enum AuditEventType {
+    REGISTER(false),
+    LOGIN(false),
+    //Login sai mật khẩu làm transaction rollback nhưng vẫn phải được ghi lại
+    LOGIN_FAILED(true),
+    REFRESH(false),
+    LOGOUT(false),
+    USER_CREATED(false),
+    ROLE_CHANGE(false),
+    PASSWORD_CHANGE(false),
+    DEACTIVATE(false),
+    ACTIVATE(false);
+
+    //false: chỉ ghi khi transaction đang chạy commit thành công
+    private final boolean recordedOnRollback;
+
+    AuditEventType(boolean recordedOnRollback) {
+        this.recordedOnRollback = recordedOnRollback;
+    }
+}
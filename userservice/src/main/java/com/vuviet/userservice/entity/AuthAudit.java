@@ -0,0 +1,43 @@
+package com.vuviet.userservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//Một dòng cho mỗi sự kiện xác thực. Được ghi bằng JDBC batch từ AuthAuditLog, entity chỉ dùng để tạo bảng và truy vấn.
+//user_id không có khóa ngoại để nhật ký vẫn còn sau khi user bị xóa
+@Entity
+@Table(name = "auth_audit", indexes = {
+        @Index(name = "idx_auth_audit_user_occurred", columnList = "user_id, occurred_at"),
+        @Index(name = "idx_auth_audit_occurred", columnList = "occurred_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthAudit {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 32)
+    private AuditEventType eventType;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(length = 50)
+    private String username;
+
+    //User đang đăng nhập thực hiện thao tác (admin khi đổi role), null nếu là chính user hoặc ẩn danh
+    @Column(length = 50)
+    private String actor;
+
+    private String detail;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+}
@@ -0,0 +1,42 @@
+package com.vuviet.userservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//Cặp key ký JWT, dùng chung giữa các instance của user-service
+@Entity
+@Table(name = "jwt_signing_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SigningKey {
+    @Id
+    @Column(length = 64)
+    private String kid;
+
+    @Column(nullable = false, length = 16)
+    private String algorithm;
+
+    //X.509, Base64
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String publicKey;
+
+    //PKCS#8 mã hóa AES-GCM bằng jwt.keys.encryption-key (SigningKeyCipher)
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String privateKey;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    //Thời điểm bắt đầu dùng key để ký, trước đó key chỉ được publish trên JWKS
+    @Column(nullable = false)
+    private Instant activatesAt;
+
+    //Số thứ tự của key, unique để khi nhiều instance cùng tạo key cho một lượt xoay vòng chỉ một instance thắng
+    @Column(unique = true)
+    private Long generation;
+}
@@ -1,22 +1,31 @@
 package com.vuviet.userservice.entity;
 
+import com.vuviet.userservice.util.RoleAuthorities;
+import com.vuviet.userservice.util.UserConstraints;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Collection;
-import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = UserConstraints.USERNAME, columnNames = "username"),
+        @UniqueConstraint(name = UserConstraints.EMAIL, columnNames = "email")
+}, indexes = {
+        //Phục vụ tìm kiếm admin có lọc trạng thái/role và phân trang keyset theo (created_at, id)
+        @Index(name = "idx_users_active_role_created", columnList = "is_active, role_id, created_at, id"),
+        @Index(name = "idx_users_created_id", columnList = "created_at, id"),
+        //Change feed cho các service khác: WHERE (updated_at, id) > cursor ORDER BY updated_at, id
+        @Index(name = "idx_users_updated_id", columnList = "updated_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,37 +34,46 @@ public class User implements UserDetails {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String username;
 
     @Column(nullable = false)
     private String password;
 
-    @Column(unique = true,nullable = false)
+    @Column(nullable = false)
     private String email;
 
     private String fullName;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "role_id", nullable = false)
     private Role role;
 
-    @Column(columnDefinition = "BOOLEAN DEFAULT TRUE")
+    @Column(name = "is_active", columnDefinition = "BOOLEAN DEFAULT TRUE")
     private Boolean isActive=true;
 
-    private String refreshToken;
+    //Tăng mỗi khi cần vô hiệu hóa mọi token đã phát hành (đổi role, đổi mật khẩu, khóa tài khoản)
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
 
-    private Instant refreshTokenExpiry;
+    //Optimistic lock, các câu UPDATE trong UserRepository kiểm tra và tự tăng cột này
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private long version;
 
     @CreationTimestamp
+    @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
+    @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority("ROLE_"+role.getName()));
+        return RoleAuthorities.of(role.getName());
     }
 
     @Override
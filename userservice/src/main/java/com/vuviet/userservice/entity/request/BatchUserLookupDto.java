@@ -0,0 +1,12 @@
+package com.vuviet.userservice.entity.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchUserLookupDto {
+    @NotEmpty(message = "Ids are required")
+    private List<Long> ids;
+}
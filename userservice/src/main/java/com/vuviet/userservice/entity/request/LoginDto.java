@@ -1,6 +1,7 @@
 package com.vuviet.userservice.entity.request;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
@@ -10,4 +11,8 @@ public class LoginDto {
 
     @NotBlank(message = "Password is required")
     private String password;
+
+    //Tên thiết bị cho phiên đăng nhập, không có thì lấy từ User-Agent
+    @Size(max = 100, message = "Device label must not exceed 100 characters")
+    private String deviceLabel;
 }
@@ -0,0 +1,31 @@
+package com.vuviet.userservice.entity.request;
+
+import org.springframework.http.MediaType;
+
+//Định dạng file import/export user
+public enum UserFileFormat {
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final String mediaType;
+
+    UserFileFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public static UserFileFormat fromContentType(String contentType){
+        if(contentType!=null){
+            MediaType type=MediaType.parseMediaType(contentType);
+            for(UserFileFormat format: values()){
+                if(type.isCompatibleWith(MediaType.parseMediaType(format.mediaType))){
+                    return format;
+                }
+            }
+        }
+        throw new RuntimeException("Unsupported content type: "+contentType);
+    }
+}
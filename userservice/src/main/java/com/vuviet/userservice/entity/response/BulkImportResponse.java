@@ -0,0 +1,29 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BulkImportResponse {
+    private long total;
+
+    private long imported;
+
+    private long failed;
+
+    //Chỉ giữ tối đa import.max-errors lỗi đầu tiên
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+
+        private String username;
+
+        private String message;
+    }
+}
@@ -0,0 +1,18 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ChangeFeedResponse<T> {
+    private List<T> changes;
+
+    //Lưu lại và gửi ở lần gọi sau. Không có thay đổi mới thì trả lại đúng cursor đã gửi
+    private String nextCursor;
+
+    //true: còn thay đổi, gọi tiếp ngay; false: đã hết, chờ một lúc rồi gọi lại
+    private boolean hasMore;
+}
@@ -0,0 +1,20 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+
+    //Truyền lại vào tham số cursor để lấy trang tiếp theo, null nếu là trang cuối
+    private String nextCursor;
+
+    private boolean hasNext;
+
+    //Chỉ có khi client yêu cầu includeTotal=true
+    private Long totalElements;
+}
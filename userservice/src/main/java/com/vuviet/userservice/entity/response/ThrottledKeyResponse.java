@@ -0,0 +1,14 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ThrottledKeyResponse {
+    private String key;
+
+    private long attempts;
+
+    private long retryAfterSeconds;
+}
@@ -0,0 +1,23 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+//Một dòng trong change feed. deleted=true (user bị khóa) là tombstone: service nhận nên bỏ user khỏi bản sao
+@Data
+@AllArgsConstructor
+public class UserChangeResponse {
+    private long id;
+
+    private String username;
+
+    private String fullName;
+
+    private String role;
+
+    private boolean deleted;
+
+    private LocalDateTime updatedAt;
+}
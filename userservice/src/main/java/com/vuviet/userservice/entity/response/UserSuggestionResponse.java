@@ -0,0 +1,16 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UserSuggestionResponse {
+    private long id;
+
+    private String username;
+
+    private String email;
+
+    private String fullName;
+}
@@ -0,0 +1,15 @@
+package com.vuviet.userservice.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+//Thông tin công khai của user cho các service khác (bảng xếp hạng, kết quả quiz)
+@Data
+@AllArgsConstructor
+public class UserSummaryResponse {
+    private long id;
+
+    private String username;
+
+    private String fullName;
+}
@@ -0,0 +1,14 @@
+package com.vuviet.userservice.exception;
+
+import lombok.Getter;
+
+//Server đang quá tải, client nên thử lại sau retryAfterSeconds giây
+@Getter
+public class ServiceBusyException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public ServiceBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,6 +1,15 @@
 package com.vuviet.userservice.filter;
 
 import com.vuviet.userservice.util.JwtUtil;
+import com.vuviet.userservice.util.RoleAuthorities;
+import com.vuviet.userservice.util.TokenClaims;
+import com.vuviet.userservice.util.TokenEpochStore;
+import com.vuviet.userservice.util.TokenRevocationList;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,7 +17,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -23,45 +32,78 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Autowired
+    private TokenEpochStore tokenEpochs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Kết quả xác thực theo từng request: missing, invalid, expired, revoked, ok
+    private Counter missingCounter;
+
+    private Counter invalidCounter;
+
+    private Counter expiredCounter;
+
+    private Counter revokedCounter;
+
+    private Counter okCounter;
+
+    @PostConstruct
+    public void initMetrics(){
+        missingCounter=outcomeCounter("missing");
+        invalidCounter=outcomeCounter("invalid");
+        expiredCounter=outcomeCounter("expired");
+        revokedCounter=outcomeCounter("revoked");
+        okCounter=outcomeCounter("ok");
+    }
+
+    private Counter outcomeCounter(String outcome){
+        return Counter.builder("jwt.filter.requests").tag("outcome", outcome).register(meterRegistry);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         //Lấy Authorization header
         final String authorizationHeader=request.getHeader("Authorization");
 
-        String username=null;
-        String jwt=null;
-
-        //Kiểm tra Bearer Token
-        if(authorizationHeader!=null && authorizationHeader.startsWith("Bearer")){
-            jwt=authorizationHeader.substring(7);
-            try {
-                username=jwtUtil.extractUsername(jwt);
-            }catch (Exception e){
-                log.error("JWT Token parsing error: {}", e.getMessage());
-            }
+        if(authorizationHeader==null || !authorizationHeader.startsWith("Bearer ")){
+            missingCounter.increment();
         }
 
-        //Nếu có username và chưa authenticate
-        if(username!=null && SecurityContextHolder.getContext().getAuthentication()==null){
+        //Kiểm tra Bearer Token, nếu chưa authenticate thì parse token đúng một lần
+        if(authorizationHeader!=null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication()==null){
+            String jwt=authorizationHeader.substring(7);
             try{
-                if(jwtUtil.validateToken(jwt)){
-                    //Lấy role từ jwt
-                    String role=jwtUtil.extractRole(jwt);
+                TokenClaims claims=jwtUtil.parseToken(jwt);
 
-                    //Tạo authorities từ role
-                    List<SimpleGrantedAuthority> authorities=List.of(
-                            new SimpleGrantedAuthority("ROLE_" + role)
-                    );
+                //Token đã bị thu hồi (logout) hoặc phát hành trước lần đổi role/mật khẩu gần nhất thì coi như request chưa đăng nhập
+                if(revocationList.isRevoked(claims) || !tokenEpochs.isCurrent(claims)){
+                    log.debug("Rejected revoked token for user {}", claims.getUsername());
+                    revokedCounter.increment();
+                    filterChain.doFilter(request,response);
+                    return;
+                }
 
-                    //Tạo authentication token
-                    UsernamePasswordAuthenticationToken authToken=new UsernamePasswordAuthenticationToken(username,null,authorities);
+                //Authorities dùng chung theo role
+                List<GrantedAuthority> authorities=RoleAuthorities.of(claims.getRole());
 
-                    //Set authentication vaò SecurityContext
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                //Tạo authentication token
+                UsernamePasswordAuthenticationToken authToken=new UsernamePasswordAuthenticationToken(claims.getUsername(),null,authorities);
 
-                }
-            }catch (Exception e){
-                log.error("Cannot set user authentication: {}", e.getMessage());
+                //Set authentication vaò SecurityContext
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+                okCounter.increment();
+            }catch (ExpiredJwtException e){
+                log.debug("JWT Token expired: {}", e.getMessage());
+                expiredCounter.increment();
+            }catch (JwtException | IllegalArgumentException e){
+                invalidCounter.increment();
+                log.error("JWT Token parsing error: {}", e.getMessage());
             }
         }
         filterChain.doFilter(request,response);
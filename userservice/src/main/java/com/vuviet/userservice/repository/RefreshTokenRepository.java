@@ -0,0 +1,36 @@
+package com.vuviet.userservice.repository;
+
+import com.vuviet.userservice.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken,Long> {
+    @Query("SELECT r FROM RefreshToken r JOIN FETCH r.user WHERE r.tokenHash=:tokenHash")
+    Optional<RefreshToken> findByTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Query("SELECT r.user.id FROM RefreshToken r WHERE r.tokenHash=:tokenHash")
+    Optional<Long> findUserIdByTokenHash(@Param("tokenHash") String tokenHash);
+
+    //Có thể được gọi ngoài transaction của service (refresh chạy NOT_SUPPORTED) nên tự mở transaction ghi
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshToken r WHERE r.tokenHash=:tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+    //Thu hồi tất cả phiên của user bằng một câu lệnh
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.user.id=:userId")
+    int revokeAllByUserId(@Param("userId") long userId);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt<:now")
+    int deleteExpired(@Param("now") Instant now);
+}
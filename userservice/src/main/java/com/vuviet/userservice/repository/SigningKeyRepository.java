@@ -0,0 +1,12 @@
+package com.vuviet.userservice.repository;
+
+import com.vuviet.userservice.entity.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKey,String> {
+    List<SigningKey> findAllByOrderByActivatesAtDesc();
+}
@@ -1,6 +1,12 @@
 package com.vuviet.userservice.repository;
 
+import com.vuviet.userservice.entity.Role;
 import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.response.UserChangeResponse;
+import com.vuviet.userservice.entity.response.UserResponse;
+import com.vuviet.userservice.entity.response.UserSummaryResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -8,17 +14,17 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User,Long>, JpaSpecificationExecutor<User> {
+public interface UserRepository extends JpaRepository<User,Long>, JpaSpecificationExecutor<User>, UserResponseQueries {
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
 
-    Optional<User> findByRefreshToken(String RefreshToken);
-
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
@@ -27,7 +33,59 @@ public interface UserRepository extends JpaRepository<User,Long>, JpaSpecificati
 
     List<User> findByIsActiveTrue();
 
+    //Đọc thẳng vào UserResponse, không load entity (password, dirty-check snapshot)
+    @Query("SELECT new com.vuviet.userservice.entity.response.UserResponse(u.id, u.username, u.email, u.fullName, r.name, u.isActive, u.createdAt) " +
+            "FROM User u JOIN u.role r WHERE u.id = :id")
+    Optional<UserResponse> findResponseById(@Param("id") long id);
+
+    @Query("SELECT new com.vuviet.userservice.entity.response.UserResponse(u.id, u.username, u.email, u.fullName, r.name, u.isActive, u.createdAt) " +
+            "FROM User u JOIN u.role r WHERE u.username = :username")
+    Optional<UserResponse> findResponseByUsername(@Param("username") String username);
+
+    @Query(value = "SELECT new com.vuviet.userservice.entity.response.UserResponse(u.id, u.username, u.email, u.fullName, r.name, u.isActive, u.createdAt) " +
+            "FROM User u JOIN u.role r",
+            countQuery = "SELECT COUNT(u) FROM User u")
+    Page<UserResponse> findAllResponses(Pageable pageable);
+
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.id = :id")
+    Optional<Integer> findTokenVersionById(@Param("id") long id);
+
+    @Query("SELECT new com.vuviet.userservice.entity.response.UserSummaryResponse(u.id, u.username, u.fullName) " +
+            "FROM User u WHERE u.id IN :ids")
+    List<UserSummaryResponse> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    //Các user có (updated_at, id) sau cursor và updated_at trước upTo, theo thứ tự thay đổi.
+    //Viết updated_at >= :timestamp riêng để MySQL quét theo khoảng trên idx_users_updated_id
+    @Query("SELECT new com.vuviet.userservice.entity.response.UserChangeResponse(u.id, u.username, u.fullName, r.name, " +
+            "CASE WHEN u.isActive = false THEN true ELSE false END, u.updatedAt) " +
+            "FROM User u JOIN u.role r " +
+            "WHERE u.updatedAt >= :timestamp AND (u.updatedAt > :timestamp OR u.id > :id) AND u.updatedAt < :upTo " +
+            "ORDER BY u.updatedAt, u.id")
+    List<UserChangeResponse> findChangesAfter(@Param("timestamp") LocalDateTime timestamp, @Param("id") long id,
+                                              @Param("upTo") LocalDateTime upTo, Pageable pageable);
+
+    //Khóa/mở khóa chỉ gán cờ nên không cần đọc user hay so version, một câu UPDATE theo id, trả 0 nếu không có user.
+    //Bulk update bỏ qua @UpdateTimestamp nên updated_at được truyền vào, change feed dựa vào cột này
     @Modifying
-    @Query("UPDATE User u SET u.refreshToken=null, u.refreshTokenExpiry=null WHERE u.id=:userId")
-    void clearRefreshToken(@Param("userId") long userId);
+    @Query("UPDATE User u SET u.isActive = false, u.tokenVersion = u.tokenVersion + 1, u.version = u.version + 1, u.updatedAt = :now " +
+            "WHERE u.id = :id")
+    int deactivate(@Param("id") long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE User u SET u.isActive = true, u.version = u.version + 1, u.updatedAt = :now " +
+            "WHERE u.id = :id")
+    int activate(@Param("id") long id, @Param("now") LocalDateTime now);
+
+    //Ghi một câu UPDATE chỉ gồm các cột thay đổi, trả 0 nếu version đã khác (bị sửa đồng thời)
+    @Modifying
+    @Query("UPDATE User u SET u.role = :role, u.tokenVersion = u.tokenVersion + 1, u.version = u.version + 1, u.updatedAt = :now " +
+            "WHERE u.id = :id AND u.version = :version")
+    int updateRole(@Param("id") long id, @Param("role") Role role, @Param("version") long version, @Param("now") LocalDateTime now);
+
+    //Kiểm tra trùng cho cả lô khi import, một query thay vì một query mỗi user
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 }
@@ -0,0 +1,17 @@
+package com.vuviet.userservice.repository;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.response.UserResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+//Truy vấn theo Specification nhưng trả thẳng UserResponse (constructor projection), không tạo entity
+public interface UserResponseQueries {
+    Page<UserResponse> findResponses(Specification<User> spec, Pageable pageable);
+
+    List<UserResponse> findResponses(Specification<User> spec, Sort sort, int limit);
+}
@@ -0,0 +1,78 @@
+package com.vuviet.userservice.repository;
+
+import com.vuviet.userservice.entity.Role;
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.response.UserResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+class UserResponseQueriesImpl implements UserResponseQueries {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<UserResponse> findResponses(Specification<User> spec, Pageable pageable) {
+        TypedQuery<UserResponse> query=createQuery(spec, pageable.getSort());
+        if(pageable.isPaged()){
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        //Chỉ đếm khi không suy ra được tổng từ trang hiện tại
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<UserResponse> findResponses(Specification<User> spec, Sort sort, int limit) {
+        return createQuery(spec, sort).setMaxResults(limit).getResultList();
+    }
+
+    //Role name lấy bằng inner join trong cùng câu query
+    private TypedQuery<UserResponse> createQuery(Specification<User> spec, Sort sort){
+        CriteriaBuilder cb=entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserResponse> query=cb.createQuery(UserResponse.class);
+        Root<User> root=query.from(User.class);
+        Join<User, Role> role=root.join("role");
+        query.select(cb.construct(UserResponse.class,
+                root.get("id"),
+                root.get("username"),
+                root.get("email"),
+                root.get("fullName"),
+                role.get("name"),
+                root.get("isActive"),
+                root.get("createdAt")));
+        Predicate predicate=spec.toPredicate(root, query, cb);
+        if(predicate!=null){
+            query.where(predicate);
+        }
+        if(sort.isSorted()){
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<User> spec){
+        CriteriaBuilder cb=entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query=cb.createQuery(Long.class);
+        Root<User> root=query.from(User.class);
+        query.select(cb.count(root));
+        Predicate predicate=spec.toPredicate(root, query, cb);
+        if(predicate!=null){
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,63 @@
+package com.vuviet.userservice.repository;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.request.UserSearchParams;
+import com.vuviet.userservice.util.CursorCodec;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class UserSpecifications {
+    //Thứ tự của phân trang keyset, phải khớp với idx_users_created_id
+    public static final Sort NEWEST_FIRST=Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    private UserSpecifications(){
+    }
+
+    //Lọc theo UserSearchParams. Username/email/fullName so khớp tiền tố để còn dùng được index.
+    //roleId lấy từ RoleRegistry nên so sánh thẳng cột role_id, không join bảng roles
+    public static Specification<User> matching(UserSearchParams params, Long roleId){
+        return (root, query, cb) -> {
+            List<Predicate> predicates=new ArrayList<>();
+            if(hasText(params.getUsername())){
+                predicates.add(cb.like(root.get("username"), prefix(params.getUsername()), '\\'));
+            }
+            if(hasText(params.getEmail())){
+                predicates.add(cb.like(root.get("email"), prefix(params.getEmail()), '\\'));
+            }
+            if(hasText(params.getFullName())){
+                predicates.add(cb.like(root.get("fullName"), prefix(params.getFullName()), '\\'));
+            }
+            if(roleId!=null){
+                predicates.add(cb.equal(root.get("role").get("id"), roleId));
+            }
+            if(params.getIsActive()!=null){
+                predicates.add(cb.equal(root.get("isActive"), params.getIsActive()));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    //Các dòng đứng sau cursor theo thứ tự NEWEST_FIRST
+    public static Specification<User> after(CursorCodec.Cursor cursor){
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), cursor.timestamp()),
+                cb.and(
+                        cb.equal(root.get("createdAt"), cursor.timestamp()),
+                        cb.lessThan(root.get("id"), cursor.id())
+                )
+        );
+    }
+
+    private static boolean hasText(String value){
+        return value!=null && !value.trim().isEmpty();
+    }
+
+    //Escape ký tự đại diện của LIKE trong dữ liệu người dùng nhập
+    private static String prefix(String value){
+        return value.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")+"%";
+    }
+}
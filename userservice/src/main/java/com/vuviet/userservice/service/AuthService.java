@@ -1,21 +1,42 @@
 package com.vuviet.userservice.service;
 
+import com.vuviet.userservice.entity.AuditEventType;
+import com.vuviet.userservice.entity.RefreshToken;
 import com.vuviet.userservice.entity.Role;
 import com.vuviet.userservice.entity.User;
 import com.vuviet.userservice.entity.request.LoginDto;
 import com.vuviet.userservice.entity.request.RegisterDto;
 import com.vuviet.userservice.entity.response.JwtResponse;
+import com.vuviet.userservice.repository.RefreshTokenRepository;
 import com.vuviet.userservice.repository.RoleRepository;
 import com.vuviet.userservice.repository.UserRepository;
+import com.vuviet.userservice.util.AuthAuditLog;
 import com.vuviet.userservice.util.JwtUtil;
+import com.vuviet.userservice.util.RoleRegistry;
+import com.vuviet.userservice.util.SingleFlight;
+import com.vuviet.userservice.util.TokenClaims;
+import com.vuviet.userservice.util.TokenDigest;
+import com.vuviet.userservice.util.TokenEpochStore;
+import com.vuviet.userservice.util.TokenRevocationList;
+import com.vuviet.userservice.util.UserConstraints;
+import com.vuviet.userservice.util.UserTypeaheadIndex;
+import io.jsonwebtoken.JwtException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+
 public interface AuthService {
     String register(RegisterDto registerDto);
 
@@ -24,6 +45,8 @@ public interface AuthService {
     JwtResponse refreshToken(String refreshToken);
 
     void logout(String refreshToken);
+
+    void revokeAccessToken(String accessToken);
 }
 
 @Service
@@ -34,31 +57,50 @@ class AuthServiceImpl implements AuthService{
 
     private final RoleRepository roleRepository;
 
+    private final RefreshTokenRepository refreshTokenRepository;
+
     private final PasswordEncoder passwordEncoder;
 
     private final AuthenticationManager authenticationManager;
 
     private final JwtUtil jwtUtil;
 
-    AuthServiceImpl(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, JwtUtil jwtUtil) {
+    private final RoleRegistry roleRegistry;
+
+    private final UserTypeaheadIndex typeaheadIndex;
+
+    private final TokenRevocationList revocationList;
+
+    private final TokenEpochStore tokenEpochs;
+
+    private final AuthAuditLog auditLog;
+
+    //Key là hash của refresh token
+    private final SingleFlight<String, JwtResponse> refreshFlight;
+
+    AuthServiceImpl(UserRepository userRepository, RoleRepository roleRepository, RefreshTokenRepository refreshTokenRepository, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, JwtUtil jwtUtil, RoleRegistry roleRegistry, UserTypeaheadIndex typeaheadIndex, TokenRevocationList revocationList, TokenEpochStore tokenEpochs, AuthAuditLog auditLog,
+                    @Value("${jwt.refresh.reuse-window:5s}") Duration refreshReuseWindow,
+                    @Value("${jwt.refresh.wait-timeout:10s}") Duration refreshWaitTimeout) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
+        this.roleRegistry = roleRegistry;
+        this.typeaheadIndex = typeaheadIndex;
+        this.revocationList = revocationList;
+        this.tokenEpochs = tokenEpochs;
+        this.auditLog = auditLog;
+        this.refreshFlight = new SingleFlight<>(refreshReuseWindow.toMillis(), refreshWaitTimeout.toMillis());
     }
 
+    //Không mở transaction ở đây để không giữ connection trong lúc chạy BCrypt, saveAndFlush tự có transaction riêng
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public String register(RegisterDto registerDto) {
-        if(userRepository.existsByUsername(registerDto.getUsername())){
-            throw new RuntimeException(("User already exists"));
-        }
-        if(userRepository.existsByEmail(registerDto.getEmail())){
-            throw new RuntimeException(("Email already exists"));
-        }
-
-        Role studientRole=roleRepository.findByName("STUDENT")
-                .orElseThrow(()->new RuntimeException("Default role not found"));
+        //Lấy id role từ registry, getReferenceById không query bảng roles
+        Role studientRole=roleRepository.getReferenceById(roleRegistry.getByName("STUDENT").getId());
 
         User user=new User();
         user.setUsername(registerDto.getUsername());
@@ -68,7 +110,17 @@ class AuthServiceImpl implements AuthService{
         user.setRole(studientRole);
         user.setIsActive(true);
 
-        userRepository.save(user);
+        //Chỉ một câu INSERT, trùng username/email do unique constraint của DB phát hiện
+        try {
+            userRepository.saveAndFlush(user);
+        }catch (DataIntegrityViolationException e){
+            if(UserConstraints.isDuplicateEmail(e)){
+                throw new RuntimeException(("Email already exists"));
+            }
+            throw new RuntimeException(("User already exists"));
+        }
+        typeaheadIndex.put(user);
+        auditLog.publish(AuditEventType.REGISTER, user.getId(), user.getUsername(), null);
         log.info("User register successfully:{}",registerDto.getUsername());
 
         return "User registered successfully";
@@ -76,22 +128,34 @@ class AuthServiceImpl implements AuthService{
 
     @Override
     public JwtResponse login(LoginDto loginDto) {
-        Authentication authentication=authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginDto.getUsername(),
-                        loginDto.getPassword()
-                )
-        );
+        Authentication authentication;
+        try {
+            authentication=authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            loginDto.getUsername(),
+                            loginDto.getPassword()
+                    )
+            );
+        }catch (AuthenticationException e){
+            auditLog.publish(AuditEventType.LOGIN_FAILED, null, loginDto.getUsername(), e.getClass().getSimpleName());
+            throw e;
+        }
 
-        User user=(User) authentication.getPrincipal();
+        UserPrincipal user=(UserPrincipal) authentication.getPrincipal();
+        tokenEpochs.observe(user.getId(), user.getTokenVersion());
 
         String accessToken=jwtUtil.generateToken(user);
 
         String refreshToken= jwtUtil.generateRefreshToken();
 
-        user.setRefreshToken(refreshToken);
-        user.setRefreshTokenExpiry(jwtUtil.getRefreshTokenExpiry());
-        userRepository.save(user);
+        //Mỗi lần login là một phiên mới, các phiên trên thiết bị khác vẫn giữ nguyên
+        RefreshToken session=new RefreshToken();
+        session.setTokenHash(TokenDigest.sha256(refreshToken));
+        session.setUser(userRepository.getReferenceById(user.getId()));
+        session.setDeviceLabel(loginDto.getDeviceLabel());
+        session.setExpiresAt(jwtUtil.getRefreshTokenExpiry());
+        refreshTokenRepository.save(session);
+        auditLog.publish(AuditEventType.LOGIN, user.getId(), user.getUsername(), loginDto.getDeviceLabel());
 
         log.info("User logged in successfully:{}",user.getUsername());
 
@@ -101,23 +165,37 @@ class AuthServiceImpl implements AuthService{
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
-                user.getRole().getName()
+                user.getRole()
         );
     }
 
+    //Nhiều tab gọi refresh cùng lúc với cùng cookie chỉ query và ký token một lần, các request còn lại dùng chung kết quả.
+    //Access token vừa ký được dùng lại trong jwt.refresh.reuse-window. Không mở transaction ở đây để các request đang chờ không giữ connection
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public JwtResponse refreshToken(String refreshToken) {
-        User user=userRepository.findByRefreshToken(refreshToken)
+        String tokenHash=TokenDigest.sha256(refreshToken);
+        return refreshFlight.execute(tokenHash, () -> issueAccessToken(refreshToken, tokenHash));
+    }
+
+    private JwtResponse issueAccessToken(String refreshToken, String tokenHash){
+        RefreshToken session=refreshTokenRepository.findByTokenHash(tokenHash)
                 .orElseThrow(()->new RuntimeException("Invalid refresh token"));
 
-        if(jwtUtil.isRefreshTokenExpired(user.getRefreshTokenExpiry())){
-            user.setRefreshToken(null);
-            user.setRefreshTokenExpiry(null);
-            userRepository.save(user);
+        if(jwtUtil.isRefreshTokenExpired(session.getExpiresAt())){
+            refreshTokenRepository.deleteByTokenHash(tokenHash);
             throw new RuntimeException("Refresh token expired");
         }
 
+        User sessionUser=session.getUser();
+        //User bị khóa thì không được cấp access token mới, kể cả khi phiên refresh còn sót lại
+        if(!Boolean.TRUE.equals(sessionUser.getIsActive())){
+            refreshTokenRepository.deleteByTokenHash(tokenHash);
+            throw new RuntimeException("User account is deactivated");
+        }
+        UserPrincipal user=UserPrincipal.from(sessionUser, roleRegistry.nameOf(sessionUser.getRole()));
         String newAccessToken= jwtUtil.generateToken(user);
+        auditLog.publish(AuditEventType.REFRESH, user.getId(), user.getUsername(), null);
         log.info("Token refresh for user: {}", user.getUsername());
         return new JwtResponse(
                 newAccessToken,
@@ -125,18 +203,41 @@ class AuthServiceImpl implements AuthService{
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
-                user.getRole().getName()
+                user.getRole()
         );
     }
 
     @Override
     public void logout(String refreshToken) {
-        User user=userRepository.findByRefreshToken(refreshToken)
-                .orElseThrow(()->new RuntimeException("Invalid refresh token"));
+        String tokenHash=TokenDigest.sha256(refreshToken);
+        refreshFlight.forget(tokenHash);
+        //Cookie chỉ có refresh token, tra user của phiên trước khi xóa để ghi nhật ký
+        Long userId=refreshTokenRepository.findUserIdByTokenHash(tokenHash).orElse(null);
+        int revoked=refreshTokenRepository.deleteByTokenHash(tokenHash);
+        if(revoked==0){
+            throw new RuntimeException("Invalid refresh token");
+        }
+        auditLog.publish(AuditEventType.LOGOUT, userId, null, null);
+        log.info("User logged out successfully");
+    }
+
+    //Access token đang dùng hết hiệu lực ngay khi logout, không chờ đến lúc hết hạn
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void revokeAccessToken(String accessToken) {
+        try {
+            TokenClaims claims=jwtUtil.parseToken(accessToken);
+            revocationList.revokeToken(claims.getTokenId(), claims.getExpiresAt());
+        }catch (JwtException | IllegalArgumentException e){
+            //Token hỏng hoặc đã hết hạn thì không cần thu hồi
+            log.debug("Skip revoking access token: {}", e.getMessage());
+        }
+    }
 
-        user.setRefreshToken(null);
-        user.setRefreshTokenExpiry(null);
-        userRepository.save(user);
-        log.info("User logged out successfully:{}", user.getUsername());
+    //Dọn các phiên đã hết hạn
+    @Scheduled(cron = "${jwt.refresh.cleanup-cron:0 0 3 * * *}")
+    public void purgeExpiredRefreshTokens(){
+        int removed=refreshTokenRepository.deleteExpired(Instant.now());
+        log.info("Removed {} expired refresh tokens", removed);
     }
 }
@@ -1,6 +1,8 @@
 package com.vuviet.userservice.service;
 
 import com.vuviet.userservice.repository.UserRepository;
+import com.vuviet.userservice.util.PrincipalCache;
+import com.vuviet.userservice.util.RoleRegistry;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -10,14 +12,28 @@ import org.springframework.stereotype.Service;
 public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository userRepository;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    private final PrincipalCache principalCache;
+
+    private final RoleRegistry roleRegistry;
+
+    public UserDetailsServiceImpl(UserRepository userRepository, PrincipalCache principalCache, RoleRegistry roleRegistry) {
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.roleRegistry = roleRegistry;
     }
 
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findByUsername(username)
+        UserPrincipal cached=principalCache.get(username);
+        if(cached!=null){
+            return cached;
+        }
+
+        UserPrincipal principal=userRepository.findByUsername(username)
+                .map(user->UserPrincipal.from(user, roleRegistry.nameOf(user.getRole())))
                 .orElseThrow(()->new RuntimeException("User not found: "+username));
+        principalCache.put(principal);
+        return principal;
     }
 }
@@ -0,0 +1,462 @@
+package com.vuviet.userservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vuviet.userservice.entity.request.CreateUserDto;
+import com.vuviet.userservice.entity.request.UserFileFormat;
+import com.vuviet.userservice.entity.response.BulkImportResponse;
+import com.vuviet.userservice.exception.ServiceBusyException;
+import com.vuviet.userservice.repository.UserRepository;
+import com.vuviet.userservice.util.BoundedPasswordEncoder;
+import com.vuviet.userservice.util.RoleInfo;
+import com.vuviet.userservice.util.RoleRegistry;
+import com.vuviet.userservice.util.UserConstraints;
+import com.vuviet.userservice.util.UserTypeaheadIndex;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public interface UserImportService {
+    BulkImportResponse importUsers(InputStream input, UserFileFormat format);
+}
+
+//Import user theo lô: đọc từng dòng từ stream, hash song song, ghi bằng JDBC batch
+@Slf4j
+@Service
+class UserImportServiceImpl implements UserImportService, DisposableBean {
+    private static final String INSERT_SQL="INSERT INTO users (username, password, email, full_name, role_id, is_active, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final List<String> CSV_COLUMNS=List.of("username", "password", "email", "fullname", "rolename");
+
+    private final UserRepository userRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final RoleRegistry roleRegistry;
+
+    private final Validator validator;
+
+    private final ObjectMapper objectMapper;
+
+    private final UserTypeaheadIndex typeaheadIndex;
+
+    //Pool hash dùng chung cho mọi lần import, tạo một lần
+    private final ThreadPoolExecutor hashPool;
+
+    @Value("${import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${import.max-errors:1000}")
+    private int maxErrors;
+
+    @Value("${import.retry-after-seconds:30}")
+    private int retryAfterSeconds;
+
+    private final Semaphore importPermits;
+
+    //Dùng encoder gốc, không đi qua pool giới hạn của login để không làm đầy hàng đợi của login.
+    //Thay vào đó import có pool riêng: ít thread hơn số core, độ ưu tiên thấp, hàng đợi có giới hạn.
+    //Hàng đợi đầy thì thread đang import tự hash (CallerRunsPolicy) với độ ưu tiên bình thường, nên số lần import
+    //cùng lúc bị giới hạn bởi import.max-concurrent: tối đa hash-threads + max-concurrent thread cùng hash
+    UserImportServiceImpl(UserRepository userRepository, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, BoundedPasswordEncoder passwordEncoder, RoleRegistry roleRegistry, Validator validator, ObjectMapper objectMapper, UserTypeaheadIndex typeaheadIndex,
+                          @Value("${import.hash-threads:0}") int hashThreads,
+                          @Value("${import.hash-queue-capacity:1000}") int hashQueueCapacity,
+                          @Value("${import.max-concurrent:1}") int maxConcurrent) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder.getDelegate();
+        this.roleRegistry = roleRegistry;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.typeaheadIndex = typeaheadIndex;
+        this.importPermits = new Semaphore(maxConcurrent);
+
+        //0 = một nửa số core, phần còn lại để cho login/đăng ký
+        int threads=hashThreads>0?hashThreads:Math.max(1, Runtime.getRuntime().availableProcessors()/2);
+        CustomizableThreadFactory threadFactory=new CustomizableThreadFactory("user-import-hash-");
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        threadFactory.setDaemon(true);
+        this.hashPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(hashQueueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void destroy() {
+        hashPool.shutdownNow();
+    }
+
+    @Override
+    public BulkImportResponse importUsers(InputStream input, UserFileFormat format) {
+        if(!importPermits.tryAcquire()){
+            throw new ServiceBusyException("Another bulk import is in progress", retryAfterSeconds);
+        }
+        try {
+            return runImport(input, format);
+        }finally {
+            importPermits.release();
+        }
+    }
+
+    private BulkImportResponse runImport(InputStream input, UserFileFormat format) {
+        ImportContext context=new ImportContext();
+        long startedAt=System.currentTimeMillis();
+
+        try (BufferedReader reader=new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            RowReader rows=format==UserFileFormat.CSV?new CsvRowReader(reader):new NdjsonRowReader(reader);
+            List<ImportRow> chunk=new ArrayList<>(batchSize);
+            ImportRow row;
+            while ((row=rows.next())!=null){
+                context.total++;
+                String error=row.error()!=null?row.error():check(row.user(), context);
+                if(error!=null){
+                    context.fail(row, error);
+                    continue;
+                }
+                chunk.add(row);
+                if(chunk.size()>=batchSize){
+                    writeChunk(chunk, context);
+                    chunk.clear();
+                }
+            }
+            if(!chunk.isEmpty()){
+                writeChunk(chunk, context);
+            }
+        }catch (IOException | UncheckedIOException e){
+            log.error("Bulk import aborted after {} rows: {}", context.total, e.getMessage());
+            throw new RuntimeException("Failed to read import file");
+        }
+
+        if(context.imported>0){
+            typeaheadIndex.reloadAsync();
+        }
+        log.info("Bulk import finished: {} rows, {} imported, {} failed in {} ms",
+                context.total, context.imported, context.failed, System.currentTimeMillis()-startedAt);
+        return new BulkImportResponse(context.total, context.imported, context.failed, context.errors);
+    }
+
+    //Kiểm tra không cần DB: validate DTO, role trong registry, trùng lặp trong chính file
+    private String check(CreateUserDto user, ImportContext context){
+        Set<ConstraintViolation<CreateUserDto>> violations=validator.validate(user);
+        if(!violations.isEmpty()){
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if(context.role(user.getRoleName())==null){
+            return "Role not found: "+user.getRoleName();
+        }
+        if(!context.seenUsernames.add(normalize(user.getUsername()))){
+            return "Duplicate username in file";
+        }
+        if(!context.seenEmails.add(normalize(user.getEmail()))){
+            return "Duplicate email in file";
+        }
+        return null;
+    }
+
+    private void writeChunk(List<ImportRow> chunk, ImportContext context){
+        //Mỗi lô chỉ 2 query kiểm tra trùng với dữ liệu đã có
+        Set<String> existingUsernames=normalizeAll(userRepository.findExistingUsernames(
+                chunk.stream().map(row -> row.user().getUsername()).toList()));
+        Set<String> existingEmails=normalizeAll(userRepository.findExistingEmails(
+                chunk.stream().map(row -> row.user().getEmail()).toList()));
+
+        List<ImportRow> accepted=new ArrayList<>(chunk.size());
+        for(ImportRow row: chunk){
+            if(existingUsernames.contains(normalize(row.user().getUsername()))){
+                context.fail(row, "Username already exists");
+            }else if(existingEmails.contains(normalize(row.user().getEmail()))){
+                context.fail(row, "Email already exists");
+            }else{
+                accepted.add(row);
+            }
+        }
+        if(accepted.isEmpty()){
+            return;
+        }
+
+        List<PreparedUser> prepared=hashAll(accepted, context);
+        if(prepared.isEmpty()){
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, prepared, prepared.size(), UserImportServiceImpl::bind));
+            context.imported+=prepared.size();
+        }catch (DataIntegrityViolationException e){
+            //Có user trùng được tạo đồng thời, ghi lại từng dòng để biết dòng nào lỗi
+            log.warn("Batch insert of {} users failed, retrying row by row: {}", prepared.size(), e.getMessage());
+            insertOneByOne(prepared, context);
+        }
+        log.debug("Bulk import progress: {} rows read, {} imported", context.total, context.imported);
+    }
+
+    //BCrypt là phần tốn CPU nhất, chia cho các thread của pool import.
+    //Hash lỗi ở dòng nào thì ghi lỗi cho dòng đó và bỏ qua, các lô trước đã commit nên không dừng cả lần import
+    private List<PreparedUser> hashAll(List<ImportRow> rows, ImportContext context){
+        List<Callable<String>> tasks=rows.stream()
+                .map(row -> (Callable<String>) () -> passwordEncoder.encode(row.user().getPassword()))
+                .toList();
+        List<PreparedUser> prepared=new ArrayList<>(rows.size());
+        try {
+            List<Future<String>> hashes=hashPool.invokeAll(tasks);
+            for(int i=0;i<rows.size();i++){
+                ImportRow row=rows.get(i);
+                try {
+                    prepared.add(new PreparedUser(row, hashes.get(i).get(), context.role(row.user().getRoleName()).getId()));
+                }catch (ExecutionException e){
+                    log.warn("Password hashing failed for import line {}: {}", row.line(), e.getCause().getMessage());
+                    context.fail(row, "Password hashing failed");
+                }
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bulk import interrupted");
+        }
+        return prepared;
+    }
+
+    private void insertOneByOne(List<PreparedUser> prepared, ImportContext context){
+        for(PreparedUser user: prepared){
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, user));
+                context.imported++;
+            }catch (DataIntegrityViolationException e){
+                context.fail(user.row(), UserConstraints.isDuplicateEmail(e)?"Email already exists":"Username already exists");
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, PreparedUser user) throws SQLException {
+        //Không qua Hibernate nên phải tự set thời gian tạo/cập nhật
+        Timestamp now=Timestamp.valueOf(LocalDateTime.now());
+        CreateUserDto dto=user.row().user();
+        ps.setString(1, dto.getUsername());
+        ps.setString(2, user.passwordHash());
+        ps.setString(3, dto.getEmail());
+        ps.setString(4, dto.getFullName());
+        ps.setLong(5, user.roleId());
+        ps.setBoolean(6, true);
+        ps.setTimestamp(7, now);
+        ps.setTimestamp(8, now);
+    }
+
+    private static String normalize(String value){
+        return value==null?"":value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> normalizeAll(List<String> values){
+        return values.stream().map(UserImportServiceImpl::normalize).collect(Collectors.toSet());
+    }
+
+    private record ImportRow(long line, CreateUserDto user, String error) {
+    }
+
+    private record PreparedUser(ImportRow row, String passwordHash, Long roleId) {
+    }
+
+    //Trạng thái của một lần import, chỉ dùng trên thread gọi importUsers
+    private class ImportContext {
+        private long total;
+
+        private long imported;
+
+        private long failed;
+
+        private final List<BulkImportResponse.RowError> errors=new ArrayList<>();
+
+        private final Set<String> seenUsernames=new HashSet<>();
+
+        private final Set<String> seenEmails=new HashSet<>();
+
+        //Nhớ cả role không tồn tại để registry không reload lại cho mỗi dòng
+        private final Map<String, Optional<RoleInfo>> roles=new HashMap<>();
+
+        private RoleInfo role(String roleName){
+            return roles.computeIfAbsent(roleName, name -> {
+                try {
+                    return Optional.of(roleRegistry.getByName(name));
+                }catch (RuntimeException e){
+                    return Optional.empty();
+                }
+            }).orElse(null);
+        }
+
+        private void fail(ImportRow row, String message){
+            failed++;
+            if(errors.size()<maxErrors){
+                String username=row.user()!=null?row.user().getUsername():null;
+                errors.add(new BulkImportResponse.RowError(row.line(), username, message));
+            }
+        }
+    }
+
+    private interface RowReader {
+        //Trả về null khi hết file
+        ImportRow next() throws IOException;
+    }
+
+    //Mỗi dòng một object JSON, bỏ qua dòng trống
+    private class NdjsonRowReader implements RowReader {
+        private final BufferedReader reader;
+
+        private long line;
+
+        private NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String text;
+            while ((text=reader.readLine())!=null){
+                line++;
+                if(text.isBlank()){
+                    continue;
+                }
+                try {
+                    return new ImportRow(line, objectMapper.readValue(text, CreateUserDto.class), null);
+                }catch (JsonProcessingException e){
+                    return new ImportRow(line, null, "Invalid JSON");
+                }
+            }
+            return null;
+        }
+    }
+
+    //Dòng đầu là header: username,password,email,fullName,roleName (không phân biệt hoa thường, cho phép dấu _)
+    private static class CsvRowReader implements RowReader {
+        private final BufferedReader reader;
+
+        private final int[] columnIndexes=new int[CSV_COLUMNS.size()];
+
+        private long line;
+
+        private CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            String header=reader.readLine();
+            if(header==null){
+                throw new RuntimeException("Import file is empty");
+            }
+            line++;
+            //Bỏ BOM nếu file được lưu từ Excel
+            List<String> names=parseLine(header.replace("\uFEFF", ""));
+            if(names==null){
+                throw new RuntimeException("Invalid CSV header");
+            }
+            names=names.stream()
+                    .map(name -> name.trim().replace("_", "").toLowerCase(Locale.ROOT))
+                    .toList();
+            for(int i=0;i<CSV_COLUMNS.size();i++){
+                columnIndexes[i]=names.indexOf(CSV_COLUMNS.get(i));
+                if(columnIndexes[i]<0){
+                    throw new RuntimeException("Missing CSV column: "+CSV_COLUMNS.get(i));
+                }
+            }
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String text;
+            while ((text=reader.readLine())!=null){
+                line++;
+                if(text.isBlank()){
+                    continue;
+                }
+                List<String> values=parseLine(text);
+                if(values==null){
+                    return new ImportRow(line, null, "Unterminated quoted value");
+                }
+                CreateUserDto user=new CreateUserDto();
+                user.setUsername(column(values, 0));
+                user.setPassword(column(values, 1));
+                user.setEmail(column(values, 2));
+                user.setFullName(column(values, 3));
+                user.setRoleName(column(values, 4));
+                return new ImportRow(line, user, null);
+            }
+            return null;
+        }
+
+        private String column(List<String> values, int column){
+            int index=columnIndexes[column];
+            return index<values.size()?values.get(index).trim():null;
+        }
+
+        //Tách một dòng CSV theo RFC 4180, không hỗ trợ xuống dòng trong giá trị. Trả về null nếu thiếu dấu nháy đóng
+        private static List<String> parseLine(String text){
+            List<String> values=new ArrayList<>();
+            StringBuilder value=new StringBuilder();
+            boolean quoted=false;
+            for(int i=0;i<text.length();i++){
+                char c=text.charAt(i);
+                if(quoted){
+                    if(c=='"'){
+                        if(i+1<text.length() && text.charAt(i+1)=='"'){
+                            value.append('"');
+                            i++;
+                        }else{
+                            quoted=false;
+                        }
+                    }else{
+                        value.append(c);
+                    }
+                }else if(c=='"'){
+                    quoted=true;
+                }else if(c==','){
+                    values.add(value.toString());
+                    value.setLength(0);
+                }else{
+                    value.append(c);
+                }
+            }
+            if(quoted){
+                return null;
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.vuviet.userservice.service;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.util.RoleAuthorities;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+//Snapshot chỉ đọc của user cho Spring Security, không giữ JPA entity nên cache được.
+//Không implement CredentialsContainer để ProviderManager không xóa password của bản đang nằm trong cache
+@Getter
+public class UserPrincipal implements UserDetails {
+    private final long id;
+
+    private final String username;
+
+    private final String password;
+
+    private final String email;
+
+    private final String fullName;
+
+    private final String role;
+
+    private final boolean active;
+
+    private final int tokenVersion;
+
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(long id, String username, String password, String email, String fullName, String role, boolean active, int tokenVersion) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.email = email;
+        this.fullName = fullName;
+        this.role = role;
+        this.active = active;
+        this.tokenVersion = tokenVersion;
+        this.authorities = RoleAuthorities.of(role);
+    }
+
+    public static UserPrincipal from(User user, String roleName){
+        return new UserPrincipal(
+                user.getId(),
+                user.getUsername(),
+                user.getPassword(),
+                user.getEmail(),
+                user.getFullName(),
+                roleName,
+                Boolean.TRUE.equals(user.getIsActive()),
+                user.getTokenVersion()
+        );
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isEnabled(){
+        return active;
+    }
+}
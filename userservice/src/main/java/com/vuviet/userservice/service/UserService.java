@@ -1,33 +1,93 @@
 package com.vuviet.userservice.service;
 
+import com.vuviet.userservice.entity.AuditEventType;
 import com.vuviet.userservice.entity.Role;
 import com.vuviet.userservice.entity.User;
 import com.vuviet.userservice.entity.request.CreateUserDto;
 import com.vuviet.userservice.entity.request.UpdateProfileDto;
 import com.vuviet.userservice.entity.request.UpdateRoleDto;
+import com.vuviet.userservice.entity.request.UserFileFormat;
+import com.vuviet.userservice.entity.request.UserSearchParams;
+import com.vuviet.userservice.entity.response.ChangeFeedResponse;
+import com.vuviet.userservice.entity.response.CursorPageResponse;
+import com.vuviet.userservice.entity.response.UserChangeResponse;
 import com.vuviet.userservice.entity.response.UserResponse;
+import com.vuviet.userservice.entity.response.UserSuggestionResponse;
+import com.vuviet.userservice.entity.response.UserSummaryResponse;
+import com.vuviet.userservice.repository.RefreshTokenRepository;
 import com.vuviet.userservice.repository.RoleRepository;
 import com.vuviet.userservice.repository.UserRepository;
+import com.vuviet.userservice.repository.UserSpecifications;
+import com.vuviet.userservice.util.AuthAuditLog;
+import com.vuviet.userservice.util.CursorCodec;
+import com.vuviet.userservice.util.PrincipalCache;
+import com.vuviet.userservice.util.RoleInfo;
+import com.vuviet.userservice.util.RoleRegistry;
+import com.vuviet.userservice.util.TokenEpochStore;
+import com.vuviet.userservice.util.UserConstraints;
+import com.vuviet.userservice.util.UserLookupCoalescer;
+import com.vuviet.userservice.util.UserTypeaheadIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.TypedQuery;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserService {
     Optional<User> findById(long id);
 
     Optional<User> findByUsername(String username);
 
+    Optional<UserResponse> getUserResponse(long id);
+
+    Optional<UserResponse> getUserResponse(String username);
+
+    List<UserSummaryResponse> getUserSummaries(Collection<Long> ids);
+
     Page<UserResponse> getAllUsers(Specification<User> spec, Pageable pageable);
 
     Page<UserResponse> getAllUsers(Pageable pageable);
 
+    CursorPageResponse<UserResponse> searchUsers(UserSearchParams params, String cursor, int size, boolean includeTotal);
+
+    ChangeFeedResponse<UserChangeResponse> getUserChanges(String cursor, int limit);
+
+    long exportUsers(Boolean isActive, String roleName, UserFileFormat format, OutputStream output) throws IOException;
+
     void deactivateUser(long userId);
 
     void activeUser(long userId);
@@ -43,16 +103,55 @@ public interface UserService {
 @Service
 @Transactional(readOnly = true)
 class UserServiceImpl implements UserService{
+    //Mốc đọc change feed khi chưa có cursor, trước mọi updated_at thực tế
+    private static final LocalDateTime FEED_START=LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final UserRepository userRepository;
 
     private final RoleRepository roleRepository;
 
+    private final RefreshTokenRepository refreshTokenRepository;
+
     private final PasswordEncoder passwordEncoder;
 
-    UserServiceImpl(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+    private final PrincipalCache principalCache;
+
+    private final RoleRegistry roleRegistry;
+
+    private final UserTypeaheadIndex typeaheadIndex;
+
+    private final UserLookupCoalescer lookupCoalescer;
+
+    private final TokenEpochStore tokenEpochs;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    private final AuthAuditLog auditLog;
+
+    //Chỉ trả các thay đổi cũ hơn khoảng này. updated_at được gán lúc flush nhưng transaction có thể commit muộn hơn,
+    //nếu không chờ thì dòng commit muộn với updated_at nhỏ hơn cursor sẽ bị bỏ qua vĩnh viễn
+    @Value("${users.changes.safety-lag-ms:5000}")
+    private long changesSafetyLagMs;
+
+    //Integer.MIN_VALUE: MySQL Connector/J trả từng dòng thay vì đọc hết result set vào bộ nhớ
+    @Value("${export.fetch-size:-2147483648}")
+    private int exportFetchSize;
+
+    UserServiceImpl(UserRepository userRepository, RoleRepository roleRepository, RefreshTokenRepository refreshTokenRepository, PasswordEncoder passwordEncoder, PrincipalCache principalCache, RoleRegistry roleRegistry, UserTypeaheadIndex typeaheadIndex, UserLookupCoalescer lookupCoalescer, TokenEpochStore tokenEpochs, EntityManager entityManager, ObjectMapper objectMapper, AuthAuditLog auditLog) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
         this.passwordEncoder = passwordEncoder;
+        this.principalCache = principalCache;
+        this.roleRegistry = roleRegistry;
+        this.typeaheadIndex = typeaheadIndex;
+        this.lookupCoalescer = lookupCoalescer;
+        this.tokenEpochs = tokenEpochs;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.auditLog = auditLog;
     }
 
 
@@ -66,82 +165,278 @@ class UserServiceImpl implements UserService{
         return userRepository.findByUsername(username);
     }
 
+    @Override
+    public Optional<UserResponse> getUserResponse(long id) {
+        return userRepository.findResponseById(id);
+    }
+
+    @Override
+    public Optional<UserResponse> getUserResponse(String username) {
+        return userRepository.findResponseByUsername(username);
+    }
+
+    //Lấy từ PrincipalCache trước, id còn thiếu gộp với các request đồng thời khác thành một câu IN.
+    //Không mở transaction để không giữ connection trong lúc chờ gộp lô
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<UserSummaryResponse> getUserSummaries(Collection<Long> ids) {
+        Map<Long, UserSummaryResponse> found=new HashMap<>();
+        List<Long> missing=new ArrayList<>();
+        for(Long id: new LinkedHashSet<>(ids)){
+            UserPrincipal principal=principalCache.getById(id);
+            if(principal!=null){
+                found.put(id, new UserSummaryResponse(principal.getId(), principal.getUsername(), principal.getFullName()));
+            }else{
+                missing.add(id);
+            }
+        }
+        if(!missing.isEmpty()){
+            found.putAll(lookupCoalescer.lookup(missing));
+        }
+        return new LinkedHashSet<>(ids).stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    //Các trang danh sách dùng projection, không load entity
     @Override
     public Page<UserResponse> getAllUsers(Specification<User> spec, Pageable pageable) {
-        Page<User> userPage=userRepository.findAll(spec,pageable);
-        return userPage.map(this::covertToUserResponse);
+        return userRepository.findResponses(spec, pageable);
     }
 
     @Override
     public Page<UserResponse> getAllUsers(Pageable pageable) {
-        Page<User> userPage=userRepository.findAll(pageable);
-        return userPage.map(this::covertToUserResponse);
+        return userRepository.findAllResponses(pageable);
     }
 
+    //Phân trang keyset: WHERE (created_at, id) < cursor ORDER BY created_at DESC, id DESC LIMIT size+1,
+    //thời gian không tăng theo số trang như OFFSET. Không đếm tổng trừ khi được yêu cầu
     @Override
+    public CursorPageResponse<UserResponse> searchUsers(UserSearchParams params, String cursor, int size, boolean includeTotal) {
+        Long roleId=null;
+        if(params.getRolName()!=null && !params.getRolName().trim().isEmpty()){
+            roleId=roleRegistry.getByName(params.getRolName().trim()).getId();
+        }
+        Specification<User> filter=UserSpecifications.matching(params, roleId);
+        Specification<User> spec=filter;
+        if(cursor!=null && !cursor.isEmpty()){
+            spec=spec.and(UserSpecifications.after(CursorCodec.decode(cursor)));
+        }
+
+        //Lấy dư một dòng để biết còn trang sau hay không
+        List<UserResponse> users=userRepository.findResponses(spec, UserSpecifications.NEWEST_FIRST, size+1);
+        boolean hasNext=users.size()>size;
+        if(hasNext){
+            users=users.subList(0, size);
+        }
+
+        String nextCursor=null;
+        if(hasNext){
+            UserResponse last=users.get(users.size()-1);
+            nextCursor=CursorCodec.encode(last.getCreatedAt(), last.getId());
+        }
+        Long total=includeTotal?userRepository.count(filter):null;
+        return new CursorPageResponse<>(users, nextCursor, hasNext, total);
+    }
+
+    //Change feed theo (updated_at, id): lần đầu không có cursor thì đọc từ đầu, sau đó chỉ lấy phần thay đổi
+    @Override
+    public ChangeFeedResponse<UserChangeResponse> getUserChanges(String cursor, int limit) {
+        CursorCodec.Cursor after=cursor!=null && !cursor.isEmpty()
+                ?CursorCodec.decode(cursor)
+                :new CursorCodec.Cursor(FEED_START, 0);
+        LocalDateTime upTo=LocalDateTime.now().minus(Duration.ofMillis(changesSafetyLagMs));
+
+        List<UserChangeResponse> changes=userRepository.findChangesAfter(after.timestamp(), after.id(), upTo, PageRequest.of(0, limit+1));
+        boolean hasMore=changes.size()>limit;
+        if(hasMore){
+            changes=changes.subList(0, limit);
+        }
+
+        String nextCursor=cursor;
+        if(!changes.isEmpty()){
+            UserChangeResponse last=changes.get(changes.size()-1);
+            nextCursor=CursorCodec.encode(last.getUpdatedAt(), last.getId());
+        }
+        return new ChangeFeedResponse<>(changes, nextCursor, hasMore);
+    }
+
+    //Đọc forward-only theo id và ghi thẳng ra output. Dòng được đọc thành UserResponse nên persistence context
+    //không giữ entity nào, heap không tăng theo số dòng
+    @Override
+    public long exportUsers(Boolean isActive, String roleName, UserFileFormat format, OutputStream output) throws IOException {
+        StringBuilder jpql=new StringBuilder("SELECT new com.vuviet.userservice.entity.response.UserResponse(u.id, u.username, u.email, u.fullName, r.name, u.isActive, u.createdAt) " +
+                "FROM User u JOIN u.role r WHERE 1=1");
+        Long roleId=null;
+        if(roleName!=null && !roleName.trim().isEmpty()){
+            roleId=roleRegistry.getByName(roleName.trim()).getId();
+            jpql.append(" AND u.role.id = :roleId");
+        }
+        if(isActive!=null){
+            jpql.append(" AND u.isActive = :isActive");
+        }
+        jpql.append(" ORDER BY u.id");
+
+        TypedQuery<UserResponse> query=entityManager.createQuery(jpql.toString(), UserResponse.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, exportFetchSize);
+        if(roleId!=null){
+            query.setParameter("roleId", roleId);
+        }
+        if(isActive!=null){
+            query.setParameter("isActive", isActive);
+        }
+
+        Writer writer=new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if(format==UserFileFormat.CSV){
+            writer.write("id,username,email,fullName,role,isActive,createdAt\n");
+        }
+        long count=0;
+        try (Stream<UserResponse> users=query.getResultStream()) {
+            Iterator<UserResponse> iterator=users.iterator();
+            while (iterator.hasNext()){
+                UserResponse user=iterator.next();
+                if(format==UserFileFormat.CSV){
+                    writeCsvRow(writer, user);
+                }else{
+                    writer.write(objectMapper.writeValueAsString(user));
+                    writer.write('\n');
+                }
+                count++;
+            }
+        }
+        writer.flush();
+        log.info("Exported {} users as {}", count, format);
+        return count;
+    }
+
+    private static void writeCsvRow(Writer writer, UserResponse user) throws IOException {
+        writer.write(String.valueOf(user.getId()));
+        writer.write(',');
+        writer.write(csv(user.getUsername()));
+        writer.write(',');
+        writer.write(csv(user.getEmail()));
+        writer.write(',');
+        writer.write(csv(user.getFullName()));
+        writer.write(',');
+        writer.write(csv(user.getRole()));
+        writer.write(',');
+        writer.write(String.valueOf(user.getIsActive()));
+        writer.write(',');
+        writer.write(user.getCreatedAt()!=null?user.getCreatedAt().toString():"");
+        writer.write('\n');
+    }
+
+    //Đặt trong dấu nháy nếu có dấu phẩy, nháy hoặc xuống dòng (RFC 4180)
+    private static String csv(String value){
+        if(value==null){
+            return "";
+        }
+        if(value.indexOf(',')<0 && value.indexOf('"')<0 && value.indexOf('\n')<0 && value.indexOf('\r')<0){
+            return value;
+        }
+        return '"'+value.replace("\"", "\"\"")+'"';
+    }
+
+    //Khóa/mở khóa là một câu UPDATE theo id, không đọc user trước. Cache và epoch được xóa theo id sau khi commit
+    @Override
+    @Transactional
     public void deactivateUser(long userId) {
-        User user=userRepository.findById(userId)
-                .orElseThrow(()->new RuntimeException("User not found"));
-        user.setIsActive(false);
-        userRepository.save(user);
+        if(userRepository.deactivate(userId, LocalDateTime.now())==0){
+            throw new RuntimeException("User not found");
+        }
+        //Khóa user thì đăng xuất mọi phiên: thu hồi refresh token, tăng epoch và xóa PrincipalCache sau khi commit
+        refreshTokenRepository.revokeAllByUserId(userId);
+        tokenEpochs.increment(userId);
+        auditLog.publish(AuditEventType.DEACTIVATE, userId, null, null);
     }
 
     @Override
+    @Transactional
     public void activeUser(long userId) {
-        User user=userRepository.findById(userId)
-                .orElseThrow(()->new RuntimeException("User not found"));
-        user.setIsActive(true);
-        userRepository.save(user);
+        if(userRepository.activate(userId, LocalDateTime.now())==0){
+            throw new RuntimeException("User not found");
+        }
+        principalCache.evictByIdAfterCommit(userId);
+        auditLog.publish(AuditEventType.ACTIVATE, userId, null, null);
     }
 
+    //Các thao tác ghi dưới đây đọc user một lần rồi ghi bằng một câu UPDATE chỉ gồm các cột thay đổi,
+    //có điều kiện version để không ghi đè thay đổi đồng thời
     @Override
     @Transactional
     public UserResponse UpdateProfile(String username, UpdateProfileDto updateProfileDto) {
         User user=userRepository.findByUsername(username)
                 .orElseThrow(()->new RuntimeException("User not found"));
         boolean needReLogin=false;
+        boolean changed=false;
+        String email=user.getEmail();
+        String fullName=user.getFullName();
+
+        CriteriaBuilder cb=entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update=cb.createCriteriaUpdate(User.class);
+        Root<User> root=update.from(User.class);
 
         if(updateProfileDto.getEmail()!=null && !updateProfileDto.getEmail().trim().isEmpty()){
             if(!updateProfileDto.getEmail().equals((user.getEmail()))){
-                if(userRepository.existsByEmail(updateProfileDto.getEmail())){
-                    throw new RuntimeException("Email already exists");
-                }
+                email=updateProfileDto.getEmail();
+                update.set(root.<String>get("email"), email);
+                changed=true;
             }
         }
 
         if(updateProfileDto.getPassword()!=null && !updateProfileDto.getPassword().trim().isEmpty()){
-            user.setPassword(passwordEncoder.encode(updateProfileDto.getPassword()));
+            update.set(root.<String>get("password"), passwordEncoder.encode(updateProfileDto.getPassword()));
+            update.set(root.<Integer>get("tokenVersion"), cb.sum(root.<Integer>get("tokenVersion"), 1));
             needReLogin=true;
+            changed=true;
         }
 
-        if(updateProfileDto.getFullName()!=null && !updateProfileDto.getFullName().trim().isEmpty()){
-            user.setFullName(updateProfileDto.getFullName());
+        if(updateProfileDto.getFullName()!=null && !updateProfileDto.getFullName().trim().isEmpty()
+                && !updateProfileDto.getFullName().equals(user.getFullName())){
+            fullName=updateProfileDto.getFullName();
+            update.set(root.<String>get("fullName"), fullName);
+            changed=true;
         }
 
-        User savedUser=userRepository.save(user);
+        UserResponse response=new UserResponse(user.getId(), user.getUsername(), email, fullName,
+                roleRegistry.nameOf(user.getRole()), user.getIsActive(), user.getCreatedAt());
+        if(!changed){
+            return response;
+        }
 
+        //Bulk update không qua @Version/@UpdateTimestamp nên tự tăng version và gán updated_at (change feed dựa vào cột này)
+        update.set(root.<Long>get("version"), cb.sum(root.<Long>get("version"), 1L));
+        update.set(root.<LocalDateTime>get("updatedAt"), LocalDateTime.now());
+        update.where(cb.equal(root.get("id"), user.getId()), cb.equal(root.get("version"), user.getVersion()));
+        //Email trùng do unique constraint phát hiện, không query kiểm tra trước. EntityManager không dịch lỗi
+        //sang DataIntegrityViolationException nên bắt PersistenceException
+        try {
+            checkUpdated(entityManager.createQuery(update).executeUpdate());
+        }catch (PersistenceException e){
+            if(UserConstraints.isDuplicateEmail(e)){
+                throw new RuntimeException("Email already exists");
+            }
+            throw e;
+        }
+
+        //Đổi mật khẩu thì đăng xuất mọi phiên
         if(needReLogin){
-            user.setRefreshToken(null);
-            user.setRefreshTokenExpiry(null);
-            userRepository.save(user);
+            refreshTokenRepository.revokeAllByUserId(user.getId());
+            tokenEpochs.bump(user.getId(), user.getUsername(), user.getTokenVersion()+1);
+            auditLog.publish(AuditEventType.PASSWORD_CHANGE, user.getId(), user.getUsername(), null);
         }
+        principalCache.evictAfterCommit(user.getUsername());
+        typeaheadIndex.put(new UserSuggestionResponse(user.getId(), user.getUsername(), email, fullName));
 
         log.info("User {} updated profile", username);
-        return covertToUserResponse(savedUser);
+        return response;
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public UserResponse CreateUser(CreateUserDto createUserDto) {
-        if(userRepository.existsByEmail(createUserDto.getEmail())){
-            throw new RuntimeException("Email already exists");
-        }
-
-        if(userRepository.existsByUsername(createUserDto.getUsername())){
-            throw new RuntimeException(("Username already exists"));
-        }
-
-        Role role=roleRepository.findByName(createUserDto.getRoleName())
-                .orElseThrow(()->new RuntimeException("Role not found: "+createUserDto.getRoleName()));
+        Role role=roleRepository.getReferenceById(roleRegistry.getByName(createUserDto.getRoleName()).getId());
 
         User user=new User();
         user.setUsername(createUserDto.getUsername());
@@ -151,7 +446,18 @@ class UserServiceImpl implements UserService{
         user.setFullName(createUserDto.getFullName());
         user.setIsActive(true);
 
-        User savedUser=userRepository.save(user);
+        //Trùng username/email do unique constraint của DB phát hiện, không query kiểm tra trước
+        User savedUser;
+        try {
+            savedUser=userRepository.saveAndFlush(user);
+        }catch (DataIntegrityViolationException e){
+            if(UserConstraints.isDuplicateEmail(e)){
+                throw new RuntimeException("Email already exists");
+            }
+            throw new RuntimeException(("Username already exists"));
+        }
+        typeaheadIndex.put(savedUser);
+        auditLog.publish(AuditEventType.USER_CREATED, savedUser.getId(), savedUser.getUsername(), "role="+createUserDto.getRoleName());
 
         log.info("Admin created new user: {} with role: {}",createUserDto.getUsername(),createUserDto.getRoleName());
 
@@ -164,19 +470,26 @@ class UserServiceImpl implements UserService{
         User user=userRepository.findById(userId)
                 .orElseThrow(()->new RuntimeException("User not found"));
 
-        Role newRole=roleRepository.findByName(updateRoleDto.getRoleName())
-                .orElseThrow(()->new RuntimeException("Role not found"));
+        RoleInfo newRole=roleRegistry.getByName(updateRoleDto.getRoleName());
 
-        String oldRole=user.getRole().getName();
-        user.setRole(newRole);
+        String oldRole=roleRegistry.nameOf(user.getRole());
+        checkUpdated(userRepository.updateRole(userId, roleRepository.getReferenceById(newRole.getId()), user.getVersion(), LocalDateTime.now()));
 
-        user.setRefreshToken(null);
-        user.setRefreshTokenExpiry(null);
+        refreshTokenRepository.revokeAllByUserId(user.getId());
+        //bump xóa PrincipalCache sau khi commit
+        tokenEpochs.bump(user.getId(), user.getUsername(), user.getTokenVersion()+1);
+        auditLog.publish(AuditEventType.ROLE_CHANGE, user.getId(), user.getUsername(), oldRole+" -> "+newRole.getName());
 
-        User savedUser=userRepository.save(user);
+        log.info("Admin changed user {} role from {} to {}", user.getUsername(), oldRole, newRole.getName());
+        return new UserResponse(user.getId(), user.getUsername(), user.getEmail(), user.getFullName(),
+                newRole.getName(), user.getIsActive(), user.getCreatedAt());
+    }
 
-        log.info("Admin changed user {} role from {} to {}", user.getUsername(), oldRole, newRole);
-        return covertToUserResponse(savedUser);
+    //0 dòng: version đã đổi từ lúc đọc, tức có thay đổi khác chen vào
+    private static void checkUpdated(int updatedRows){
+        if(updatedRows==0){
+            throw new OptimisticLockingFailureException("User was modified concurrently, please retry");
+        }
     }
 
     private UserResponse covertToUserResponse(User user){
@@ -185,7 +498,7 @@ class UserServiceImpl implements UserService{
                 user.getUsername(),
                 user.getEmail(),
                 user.getFullName(),
-                user.getRole().getName(),
+                roleRegistry.nameOf(user.getRole()),
                 user.getIsActive(),
                 user.getCreatedAt()
         );
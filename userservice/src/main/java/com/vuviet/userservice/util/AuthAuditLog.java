@@ -0,0 +1,232 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.AuditEventType;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Nhật ký xác thực (login, logout, refresh, đổi role, khóa tài khoản...) ghi vào bảng auth_audit.
+//Request thread chỉ đưa sự kiện vào hàng đợi có giới hạn, không chờ DB; một thread nền gom thành lô và ghi bằng JDBC batch.
+//Hàng đợi đầy thì xử lý theo audit.overflow-policy. Khi tắt ứng dụng, thread nền ghi nốt phần còn lại trước khi DataSource đóng
+@Component
+@Slf4j
+public class AuthAuditLog implements SmartLifecycle, MeterBinder {
+    private static final String INSERT_SQL="INSERT INTO auth_audit (event_type, user_id, username, actor, detail, occurred_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_DETAIL_LENGTH=255;
+
+    public enum OverflowPolicy {
+        //Bỏ sự kiện mới, request không bị chậm
+        DROP_NEWEST,
+        //Bỏ sự kiện cũ nhất trong hàng đợi để nhận sự kiện mới
+        DROP_OLDEST,
+        //Request thread tự ghi xuống DB, không mất sự kiện nhưng request chậm theo DB
+        CALLER_RUNS
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${audit.queue-capacity:8192}")
+    private int queueCapacity;
+
+    @Value("${audit.batch-size:500}")
+    private int batchSize;
+
+    //Thread nền chờ tối đa chừng này khi hàng đợi rỗng rồi kiểm tra lại trạng thái dừng
+    @Value("${audit.poll-interval-ms:200}")
+    private long pollIntervalMs;
+
+    @Value("${audit.overflow-policy:drop-newest}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${audit.shutdown-timeout-ms:5000}")
+    private long shutdownTimeoutMs;
+
+    private ArrayBlockingQueue<AuditRecord> queue;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    private final LongAdder written=new LongAdder();
+
+    private final LongAdder dropped=new LongAdder();
+
+    private final LongAdder failed=new LongAdder();
+
+    public AuthAuditLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init(){
+        queue=new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    //Trong transaction thì chỉ đưa vào hàng đợi sau khi commit, để không ghi lại thay đổi đã bị rollback
+    public void publish(AuditEventType type, Long userId, String username, String detail){
+        AuditRecord record=new AuditRecord(type, userId, username, currentActor(), truncate(detail), Instant.now());
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if(status==STATUS_COMMITTED || type.isRecordedOnRollback()){
+                        enqueue(record);
+                    }
+                }
+            });
+        }else{
+            enqueue(record);
+        }
+    }
+
+    private void enqueue(AuditRecord record){
+        //Thread nền chưa chạy hoặc đã dừng thì ghi luôn
+        if(!running){
+            write(List.of(record));
+            return;
+        }
+        if(queue.offer(record)){
+            return;
+        }
+        switch (overflowPolicy){
+            case DROP_NEWEST -> dropped.increment();
+            case DROP_OLDEST -> {
+                while (!queue.offer(record)){
+                    if(queue.poll()!=null){
+                        dropped.increment();
+                    }
+                }
+            }
+            case CALLER_RUNS -> write(List.of(record));
+        }
+    }
+
+    private void runWriter(){
+        List<AuditRecord> batch=new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()){
+            try {
+                AuditRecord first=queue.poll(pollIntervalMs, TimeUnit.MILLISECONDS);
+                if(first==null){
+                    continue;
+                }
+                //Lấy luôn những gì đã dồn lại trong lúc ghi lô trước
+                batch.add(first);
+                queue.drainTo(batch, batchSize-1);
+                write(batch);
+                batch.clear();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(List<AuditRecord> records){
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), (ps, record) -> {
+                ps.setString(1, record.type().name());
+                if(record.userId()!=null){
+                    ps.setLong(2, record.userId());
+                }else{
+                    ps.setNull(2, Types.BIGINT);
+                }
+                ps.setString(3, record.username());
+                ps.setString(4, record.actor());
+                ps.setString(5, record.detail());
+                ps.setTimestamp(6, Timestamp.from(record.occurredAt()));
+            });
+            written.add(records.size());
+        }catch (DataAccessException e){
+            failed.add(records.size());
+            log.error("Failed to write {} audit events: {}", records.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        running=true;
+        writer=new Thread(this::runWriter, "auth-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //Thread nền ghi hết hàng đợi rồi mới thoát; quá shutdown-timeout-ms thì bỏ phần còn lại
+    @Override
+    public synchronized void stop() {
+        running=false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        if(writer.isAlive()){
+            log.warn("Audit writer did not finish in {} ms, {} events not written", shutdownTimeoutMs, queue.size());
+            return;
+        }
+        //Sự kiện lọt vào hàng đợi ngay lúc thread nền thoát
+        List<AuditRecord> remaining=new ArrayList<>();
+        queue.drainTo(remaining);
+        if(!remaining.isEmpty()){
+            write(remaining);
+        }
+        log.info("Audit writer stopped, {} events written", written.sum());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    //Dừng sau web server (graceful shutdown ở DEFAULT_PHASE-1024, dừng hẳn ở DEFAULT_PHASE-2048),
+    //để sự kiện của các request đang chạy dở vẫn vào hàng đợi và được ghi
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE-4096;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auth.audit.events", written, LongAdder::sum).tag("result", "written").register(registry);
+        FunctionCounter.builder("auth.audit.events", dropped, LongAdder::sum).tag("result", "dropped").register(registry);
+        FunctionCounter.builder("auth.audit.events", failed, LongAdder::sum).tag("result", "failed").register(registry);
+        Gauge.builder("auth.audit.queue", this, auditLog -> auditLog.queue.size()).register(registry);
+    }
+
+    private static String currentActor(){
+        Authentication authentication=SecurityContextHolder.getContext().getAuthentication();
+        if(authentication==null || authentication instanceof AnonymousAuthenticationToken){
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static String truncate(String detail){
+        return detail!=null && detail.length()>MAX_DETAIL_LENGTH?detail.substring(0, MAX_DETAIL_LENGTH):detail;
+    }
+
+    private record AuditRecord(AuditEventType type, Long userId, String username, String actor, String detail, Instant occurredAt) {
+    }
+}
@@ -0,0 +1,188 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Chạy BCrypt trên pool riêng thay vì trên request thread. Số thao tác được nhận (đang chạy + đang chờ) giới hạn theo
+//số thread của pool, vượt quá thì báo bận ngay (503) chứ không để request thread chờ, các endpoint khác không bị kẹt theo.
+//Pool là platform thread kể cả khi bật virtual thread vì BCrypt tốn CPU, không phải chờ I/O
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    //Mỗi permit là một thao tác đang chạy hoặc đang chờ trong pool. Trả lại khi thao tác chạy xong
+    //hoặc bị hủy trước khi chạy, không trả khi request thôi chờ mà hash vẫn đang chạy
+    private final Semaphore admission;
+
+    private final int capacity;
+
+    private final long waitTimeoutMs;
+
+    private final int retryAfterSeconds;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    //Thời gian nằm trong hàng đợi trước khi được chạy, tách riêng với thời gian BCrypt
+    private final Timer waitTimer;
+
+    private final Counter rejectedCounter;
+
+    //maxQueuedPerThread: số thao tác được chờ cho mỗi thread, thời gian chờ tối đa khoảng maxQueuedPerThread lần một lần BCrypt
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int poolSize, int maxQueuedPerThread, long waitTimeoutMs,
+                                  int retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.capacity = poolSize*(1+maxQueuedPerThread);
+        this.admission = new Semaphore(capacity);
+        //Hàng đợi không cần giới hạn riêng, semaphore đã chặn trước khi submit
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("password-hash-"));
+
+        this.encodeTimer = Timer.builder("password.hash").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hash").tag("operation", "matches").register(meterRegistry);
+        this.waitTimer = Timer.builder("password.hash.wait").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hash.rejected").register(meterRegistry);
+        Gauge.builder("password.hash.queue.size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("password.hash.pending", this, BoundedPasswordEncoder::pending).register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    //Encoder gốc, dùng cho các tác vụ nền có pool riêng (không đi qua hàng đợi của request)
+    public PasswordEncoder getDelegate() {
+        return delegate;
+    }
+
+    //Số thao tác đang chạy hoặc đang chờ
+    public int pending(){
+        return capacity-admission.availablePermits();
+    }
+
+    private <T> T submit(Timer timer, Callable<T> task){
+        if(!admission.tryAcquire()){
+            rejectedCounter.increment();
+            throw new ServiceBusyException("Too many password operations in progress", retryAfterSeconds);
+        }
+        long submittedAt=System.nanoTime();
+        HashTask<T> future=new HashTask<>(() -> {
+            waitTimer.record(System.nanoTime()-submittedAt, TimeUnit.NANOSECONDS);
+            return timer.recordCallable(task);
+        });
+        try {
+            executor.execute(future);
+        }catch (RejectedExecutionException e){
+            future.release();
+            rejectedCounter.increment();
+            throw new ServiceBusyException("Password hashing pool is shut down", retryAfterSeconds);
+        }
+
+        //Timeout chỉ là chốt an toàn, với giới hạn ở trên thời gian chờ thường ngắn hơn nhiều.
+        //BCrypt đang chạy không dừng được giữa chừng, nên chỉ hủy thao tác chưa bắt đầu
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        }catch (TimeoutException e){
+            future.cancel(false);
+            rejectedCounter.increment();
+            throw new ServiceBusyException("Password operation timed out", retryAfterSeconds);
+        }catch (InterruptedException e){
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Password operation interrupted", retryAfterSeconds);
+        }catch (ExecutionException e){
+            Throwable cause=e.getCause();
+            if(cause instanceof RuntimeException runtimeException){
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    //Trả permit đúng một lần: khi hash chạy xong, hoặc khi bị hủy lúc chưa chạy
+    private final class HashTask<T> extends FutureTask<T> {
+        private final AtomicBoolean released=new AtomicBoolean();
+
+        private volatile boolean started;
+
+        private HashTask(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            started=true;
+            try {
+                super.run();
+            }finally {
+                release();
+            }
+        }
+
+        //Trả permit trước khi kết quả tới tay request, request gọi lại ngay vẫn còn chỗ
+        @Override
+        protected void set(T value) {
+            release();
+            super.set(value);
+        }
+
+        @Override
+        protected void setException(Throwable throwable) {
+            release();
+            super.setException(throwable);
+        }
+
+        @Override
+        protected void done() {
+            if(!started){
+                release();
+            }
+        }
+
+        private void release(){
+            if(released.compareAndSet(false, true)){
+                admission.release();
+            }
+        }
+    }
+}
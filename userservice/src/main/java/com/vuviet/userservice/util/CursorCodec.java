@@ -0,0 +1,30 @@
+package com.vuviet.userservice.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+//Cursor cho phân trang keyset: (thời gian, id) của dòng cuối trang, mã hóa Base64url để client coi là chuỗi mờ
+public final class CursorCodec {
+    private CursorCodec(){
+    }
+
+    public static String encode(LocalDateTime timestamp, long id){
+        String raw=timestamp+"|"+id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String cursor){
+        try {
+            String raw=new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator=raw.lastIndexOf('|');
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator+1)));
+        }catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e){
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    public record Cursor(LocalDateTime timestamp, long id) {
+    }
+}
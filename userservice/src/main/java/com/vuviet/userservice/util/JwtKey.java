@@ -0,0 +1,24 @@
+package com.vuviet.userservice.util;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Instant;
+
+//Key đã decode, dùng để ký và verify token
+@Getter
+@AllArgsConstructor
+public class JwtKey {
+    private final String kid;
+
+    private final SignatureAlgorithm algorithm;
+
+    private final PrivateKey privateKey;
+
+    private final PublicKey publicKey;
+
+    private final Instant activatesAt;
+}
@@ -0,0 +1,200 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.SigningKey;
+import com.vuviet.userservice.repository.SigningKeyRepository;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Quản lý các key ký JWT theo kid: key mới được publish trước (pre-publish), sau đó mới dùng để ký,
+//key cũ vẫn verify được thêm một khoảng retention để token đã phát không bị mất hiệu lực
+@Component
+@Slf4j
+public class JwtKeyStore {
+    private static final SignatureAlgorithm ALGORITHM=SignatureAlgorithm.RS256;
+
+    @Value("${jwt.keys.rotation-interval:7d}")
+    private Duration rotationInterval;
+
+    @Value("${jwt.keys.pre-publish:10m}")
+    private Duration prePublish;
+
+    @Value("${jwt.keys.retention:1h}")
+    private Duration retention;
+
+    private final SigningKeyRepository signingKeyRepository;
+
+    private final SigningKeyCipher cipher;
+
+    private volatile KeySet keySet=new KeySet(List.of());
+
+    public JwtKeyStore(SigningKeyRepository signingKeyRepository, SigningKeyCipher cipher) {
+        this.signingKeyRepository = signingKeyRepository;
+        this.cipher = cipher;
+    }
+
+    @PostConstruct
+    public void init(){
+        refresh();
+    }
+
+    //Đọc lại key từ DB (để thấy key do instance khác tạo), tạo key mới khi đến hạn, xóa key đã hết retention.
+    //Key đầu tiên active ngay: chưa có token nào ký bằng nó nên không cần chờ JWKS của service khác
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-interval-ms:60000}", initialDelayString = "${jwt.keys.refresh-interval-ms:60000}")
+    public void refresh(){
+        Instant now=Instant.now();
+        List<SigningKey> keys=new ArrayList<>(signingKeyRepository.findAllByOrderByActivatesAtDesc());
+
+        if(keys.isEmpty() || !keys.get(0).getActivatesAt().isAfter(now.minus(rotationInterval).plus(prePublish))){
+            Instant activatesAt=keys.isEmpty()?now:maxOf(now.plus(prePublish), keys.get(0).getActivatesAt().plus(rotationInterval));
+            try {
+                SigningKey created=signingKeyRepository.save(generateKey(now, activatesAt, nextGeneration(keys)));
+                keys.add(0, created);
+                log.info("Created JWT signing key {} active from {}", created.getKid(), activatesAt);
+            }catch (DataIntegrityViolationException e){
+                //Instance khác đã tạo key cho lượt này (trùng generation), dùng key của instance đó
+                log.info("JWT signing key was created by another instance, reloading");
+                keys=new ArrayList<>(signingKeyRepository.findAllByOrderByActivatesAtDesc());
+            }
+        }
+
+        List<SigningKey> expired=findExpired(keys, now);
+        if(!expired.isEmpty()){
+            signingKeyRepository.deleteAll(expired);
+            keys.removeAll(expired);
+            log.info("Removed {} expired JWT signing keys", expired.size());
+        }
+
+        encryptLegacyKeys(keys);
+        apply(keys.stream().map(this::decode).toList());
+    }
+
+    public void apply(List<JwtKey> keys){
+        keySet=new KeySet(keys);
+    }
+
+    //Key ký token: key mới nhất đã đến thời điểm active
+    public JwtKey getSigningKey(){
+        Instant now=Instant.now();
+        for(JwtKey key: keySet.byActivation){
+            if(!key.getActivatesAt().isAfter(now)){
+                return key;
+            }
+        }
+        throw new IllegalStateException("No active JWT signing key");
+    }
+
+    public PublicKey getVerificationKey(String kid){
+        JwtKey key=kid!=null?keySet.byKid.get(kid):null;
+        return key!=null?key.getPublicKey():null;
+    }
+
+    //Các key đang publish trên JWKS, gồm cả key sắp active và key cũ còn trong retention
+    public List<JwtKey> getPublishedKeys(){
+        return keySet.byActivation;
+    }
+
+    //Key bị thay thế từ lúc key mới hơn active, hết retention sau đó thì xóa
+    private List<SigningKey> findExpired(List<SigningKey> keysByActivationDesc, Instant now){
+        List<SigningKey> expired=new ArrayList<>();
+        Instant supersededAt=null;
+        for(SigningKey key: keysByActivationDesc){
+            if(supersededAt!=null && supersededAt.plus(retention).isBefore(now)){
+                expired.add(key);
+            }
+            if(!key.getActivatesAt().isAfter(now)){
+                supersededAt=key.getActivatesAt();
+            }
+        }
+        return expired;
+    }
+
+    //Dòng cũ có generation null, key tiếp theo lấy generation lớn nhất + 1
+    private static long nextGeneration(List<SigningKey> keys){
+        long max=0;
+        for(SigningKey key: keys){
+            if(key.getGeneration()!=null){
+                max=Math.max(max, key.getGeneration());
+            }
+        }
+        return max+1;
+    }
+
+    private SigningKey generateKey(Instant now, Instant activatesAt, long generation){
+        KeyPair keyPair=Keys.keyPairFor(ALGORITHM);
+        String kid=UUID.randomUUID().toString();
+        return new SigningKey(
+                kid,
+                ALGORITHM.getValue(),
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+                cipher.encrypt(kid, keyPair.getPrivate().getEncoded()),
+                now,
+                activatesAt,
+                generation
+        );
+    }
+
+    //Key tạo trước khi có mã hóa được mã hóa lại ở lần refresh đầu tiên
+    private void encryptLegacyKeys(List<SigningKey> keys){
+        for(SigningKey key: keys){
+            if(!cipher.isEncrypted(key.getPrivateKey())){
+                key.setPrivateKey(cipher.encrypt(key.getKid(), Base64.getDecoder().decode(key.getPrivateKey())));
+                signingKeyRepository.save(key);
+                log.info("Encrypted stored JWT signing key {}", key.getKid());
+            }
+        }
+    }
+
+    private JwtKey decode(SigningKey key){
+        try {
+            SignatureAlgorithm algorithm=SignatureAlgorithm.forName(key.getAlgorithm());
+            KeyFactory keyFactory=KeyFactory.getInstance(algorithm.getFamilyName());
+            PublicKey publicKey=keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey())));
+            PrivateKey privateKey=keyFactory.generatePrivate(new PKCS8EncodedKeySpec(cipher.decrypt(key.getKid(), key.getPrivateKey())));
+            return new JwtKey(key.getKid(), algorithm, privateKey, publicKey, key.getActivatesAt());
+        }catch (GeneralSecurityException e){
+            throw new IllegalStateException("Cannot decode JWT signing key "+key.getKid(), e);
+        }
+    }
+
+    private static Instant maxOf(Instant a, Instant b){
+        return a.isAfter(b)?a:b;
+    }
+
+    private static final class KeySet {
+        private final List<JwtKey> byActivation;
+
+        private final Map<String, JwtKey> byKid;
+
+        private KeySet(List<JwtKey> keys) {
+            this.byActivation=keys.stream()
+                    .sorted(Comparator.comparing(JwtKey::getActivatesAt).reversed())
+                    .toList();
+            this.byKid=keys.stream()
+                    .collect(Collectors.toUnmodifiableMap(JwtKey::getKid, Function.identity()));
+        }
+    }
+}
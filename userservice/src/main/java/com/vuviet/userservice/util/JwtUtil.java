@@ -2,18 +2,25 @@ package com.vuviet.userservice.util;
 
 
 import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.service.UserPrincipal;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 //import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
+import java.security.Key;
 import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
@@ -24,26 +31,52 @@ import java.util.function.Function;
 @Component
 @Slf4j
 public class JwtUtil {
-    @Value("${jwt.secret}")
-    private String secret;
-
     @Value("${jwt.expiration}")
     private Long expiration;
 
     @Value("${jwt.refresh.expiration}")
     private  Long refreshExpiration;
 
-    //Tạo key
-    private SecretKey getSigningKey(){
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    private final VerifiedTokenCache tokenCache;
+
+    private final JwtKeyStore keyStore;
+
+    private JwtParser jwtParser;
+
+    //Chỉ đo lần ký/parse thật, lần lấy từ cache không tính
+    private final Timer signTimer;
+
+    private final Timer parseTimer;
+
+    public JwtUtil(VerifiedTokenCache tokenCache, JwtKeyStore keyStore, MeterRegistry meterRegistry) {
+        this.tokenCache = tokenCache;
+        this.keyStore = keyStore;
+        this.signTimer = Timer.builder("jwt.sign").register(meterRegistry);
+        this.parseTimer = Timer.builder("jwt.parse").register(meterRegistry);
+    }
+
+    //Tạo parser một lần khi khởi động, public key được chọn theo kid trong header
+    //JwtParser là immutable nên dùng chung giữa các thread được
+    @PostConstruct
+    public void init(){
+        jwtParser=Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter(){
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key=keyStore.getVerificationKey(header.getKeyId());
+                        if(key==null){
+                            throw new UnsupportedJwtException("Unknown JWT signing key: "+header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
     }
 
     //Hàm generic để lấy bất kỳ claim nào tử token
     private Claims extractAllClaims(String token){
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey((getSigningKey()))
-                    .build()
+            return jwtParser
                     .parseClaimsJws(token)
                     .getBody();
         } catch (JwtException e) {
@@ -51,6 +84,40 @@ public class JwtUtil {
             throw e;
         }
     }
+
+    //Parse token một lần, các lần gọi sau với cùng token lấy từ cache đến khi token hết hạn
+    public TokenClaims parseToken(String token){
+        String digest=TokenDigest.sha256(token);
+        TokenClaims cached=tokenCache.get(digest);
+        if(cached!=null){
+            return cached;
+        }
+
+        Timer.Sample sample=Timer.start();
+        Claims claims;
+        try {
+            claims=extractAllClaims(token);
+        }finally {
+            sample.stop(parseTimer);
+        }
+        if(claims.getExpiration()==null){
+            throw new MalformedJwtException("JWT has no expiration");
+        }
+        Object userId=claims.get("id");
+        TokenClaims parsed=new TokenClaims(
+                claims.getId(),
+                claims.getSubject(),
+                userId!=null?Long.valueOf(userId.toString()):null,
+                (String) claims.get("role"),
+                (String) claims.get("email"),
+                claims.get("ver", Integer.class),
+                claims.getIssuedAt()!=null?claims.getIssuedAt().toInstant():null,
+                claims.getExpiration().toInstant()
+        );
+        tokenCache.put(digest, parsed);
+        return parsed;
+    }
+
     public <T> T extractClaim(String token, Function<Claims,T> claimsResolver){
         final Claims claims=extractAllClaims(token);
         return claimsResolver.apply(claims);
@@ -91,38 +158,43 @@ public class JwtUtil {
 
     //Tạo token
     private String createToken(Map<String, Object> claims, String subject){
-        return Jwts.builder()
+        JwtKey signingKey=keyStore.getSigningKey();
+        return signTimer.record(() -> Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                 .setClaims(claims)
                 .setSubject(subject) //username
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt((new Date(System.currentTimeMillis())))
                 .setExpiration(new Date(System.currentTimeMillis()+expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.ES256)
-                .compact();
+                .signWith(signingKey.getPrivateKey(), signingKey.getAlgorithm())
+                .compact());
     }
 
     //Tạo jwt token
     public String generateToken(UserDetails userDetails){
         Map<String, Object> claims=new HashMap<>();
-
-        if(userDetails instanceof User){
-            User user=(User) userDetails;
-            claims.put("id", user.getId());
-            claims.put("email",user.getEmail());
-            claims.put("role",user.getRole().getName());
-        }
+        putUserClaims(claims, userDetails);
         return createToken(claims,userDetails.getUsername());
     }
 
     public String generateToken(UserDetails userDetails,Map<String, Object> extractClaims){
         Map<String, Object> claims=new HashMap<>(extractClaims);
+        putUserClaims(claims, userDetails);
+        return createToken(claims,userDetails.getUsername());
+    }
 
-        if(userDetails instanceof User){
-            User user=(User) userDetails;
+    private void putUserClaims(Map<String, Object> claims, UserDetails userDetails){
+        if(userDetails instanceof UserPrincipal principal){
+            claims.put("id", principal.getId());
+            claims.put("email",principal.getEmail());
+            claims.put("role",principal.getRole());
+            claims.put("ver", principal.getTokenVersion());
+        }else if(userDetails instanceof User user){
             claims.put("id", user.getId());
             claims.put("email",user.getEmail());
             claims.put("role",user.getRole().getName());
+            claims.put("ver", user.getTokenVersion());
         }
-        return createToken(claims,userDetails.getUsername());
     }
 
     //Validation
@@ -138,10 +210,7 @@ public class JwtUtil {
 
     public Boolean validateToken(String token){
         try{
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
+            jwtParser.parseClaimsJws(token);
             return true;
         }catch (JwtException | IllegalArgumentException e){
             log.error("JWT validation error: {}", e.getMessage());
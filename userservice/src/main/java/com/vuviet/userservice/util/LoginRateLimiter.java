@@ -0,0 +1,233 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.response.ThrottledKeyResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Giới hạn số lần login theo username và theo IP, chặn trước khi chạy BCrypt.
+//Dùng sliding window xấp xỉ (cửa sổ hiện tại + cửa sổ trước có trọng số), khóa theo stripe
+@Component
+@Slf4j
+public class LoginRateLimiter implements MeterBinder {
+    private static final int STRIPES=64;
+
+    private static final String USER_PREFIX="user:";
+
+    private static final String IP_PREFIX="ip:";
+
+    @Value("${security.login-limit.username.max-attempts:5}")
+    private int maxAttemptsPerUsername;
+
+    //Giới hạn theo IP phải đủ rộng cho cả lớp học/phòng lab dùng chung một IP qua NAT
+    @Value("${security.login-limit.ip.max-attempts:300}")
+    private int maxAttemptsPerIp;
+
+    @Value("${security.login-limit.window-seconds:60}")
+    private long windowSeconds;
+
+    @Value("${security.login-limit.max-keys:100000}")
+    private int maxKeys;
+
+    private final ReentrantLock[] locks=new ReentrantLock[STRIPES];
+
+    private final ConcurrentHashMap<String, Window> windows=new ConcurrentHashMap<>();
+
+    private final LongAdder rejected=new LongAdder();
+
+    private final LongAdder untracked=new LongAdder();
+
+    private final AtomicLong lastSweep=new AtomicLong();
+
+    public LoginRateLimiter() {
+        for(int i=0;i<STRIPES;i++){
+            locks[i]=new ReentrantLock();
+        }
+    }
+
+    //Trả về 0 nếu được phép login, ngược lại là số giây client cần chờ.
+    //Kiểm tra và ghi nhận nằm trong cùng lock của cả 2 key, nên burst đồng thời không vượt quá giới hạn
+    public long tryAcquire(String username, String clientIp){
+        long now=System.currentTimeMillis();
+        String userKey=USER_PREFIX+normalize(username);
+        String ipKey=IP_PREFIX+clientIp;
+
+        ReentrantLock first=lockFor(userKey);
+        ReentrantLock second=lockFor(ipKey);
+        //Luôn lấy lock theo thứ tự stripe để tránh deadlock
+        if(stripeOf(ipKey)<stripeOf(userKey)){
+            ReentrantLock tmp=first;
+            first=second;
+            second=tmp;
+        }
+        first.lock();
+        if(second!=first){
+            second.lock();
+        }
+        try {
+            Window userWindow=windowFor(userKey, now);
+            if(userWindow==null){
+                //Hết chỗ cho username mới thì từ chối (fail closed), không để login chạy mà không bị giới hạn.
+                //Key nhàn rỗi được dọn mỗi giây nên client thử lại sau 1 giây
+                rejected.increment();
+                return 1;
+            }
+            Window ipWindow=windowFor(ipKey, now);
+            long retryAfter=Math.max(retryAfter(userWindow, maxAttemptsPerUsername, now), retryAfter(ipWindow, maxAttemptsPerIp, now));
+            if(retryAfter>0){
+                rejected.increment();
+                return retryAfter;
+            }
+            userWindow.add(now, windowMillis());
+            if(ipWindow!=null){
+                ipWindow.add(now, windowMillis());
+            }
+            return 0;
+        }finally {
+            if(second!=first){
+                second.unlock();
+            }
+            first.unlock();
+        }
+    }
+
+    //Login thành công thì bỏ đếm theo username, giữ đếm theo IP
+    public void reset(String username){
+        String userKey=USER_PREFIX+normalize(username);
+        ReentrantLock lock=lockFor(userKey);
+        lock.lock();
+        try {
+            windows.remove(userKey);
+        }finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ThrottledKeyResponse> getThrottledKeys(){
+        long now=System.currentTimeMillis();
+        List<ThrottledKeyResponse> throttled=new ArrayList<>();
+        for(Map.Entry<String, Window> entry: windows.entrySet()){
+            String key=entry.getKey();
+            int limit=key.startsWith(USER_PREFIX)?maxAttemptsPerUsername:maxAttemptsPerIp;
+            ReentrantLock lock=lockFor(key);
+            lock.lock();
+            try {
+                Window window=entry.getValue();
+                long attempts=window.estimate(now, windowMillis());
+                if(attempts>=limit){
+                    throttled.add(new ThrottledKeyResponse(key, attempts, window.retryAfterSeconds(now, windowMillis())));
+                }
+            }finally {
+                lock.unlock();
+            }
+        }
+        return throttled;
+    }
+
+    //Gọi khi đang giữ lock của key
+    private long retryAfter(Window window, int limit, long now){
+        if(window==null || window.estimate(now, windowMillis())<limit){
+            return 0;
+        }
+        return window.retryAfterSeconds(now, windowMillis());
+    }
+
+    //Gọi khi đang giữ lock của key, trả về null nếu hết chỗ cho key mới
+    private Window windowFor(String key, long now){
+        Window window=windows.get(key);
+        if(window!=null){
+            return window;
+        }
+        if(windows.size()>=maxKeys){
+            evictIdle(now);
+            if(windows.size()>=maxKeys){
+                //Hết chỗ thì không theo dõi key mới. Key IP bị bỏ qua, key username thì tryAcquire từ chối
+                untracked.increment();
+                return null;
+            }
+        }
+        return windows.computeIfAbsent(key, k -> new Window());
+    }
+
+    //Xóa key không có lần thử nào trong 2 cửa sổ gần nhất, tối đa một lần mỗi giây
+    private void evictIdle(long now){
+        long last=lastSweep.get();
+        if(now-last<1000 || !lastSweep.compareAndSet(last, now)){
+            return;
+        }
+        long idleBefore=now-2*windowMillis();
+        windows.entrySet().removeIf(entry -> entry.getValue().windowStart<idleBefore);
+        log.debug("Login limiter sweep, {} keys tracked", windows.size());
+    }
+
+    private ReentrantLock lockFor(String key){
+        return locks[stripeOf(key)];
+    }
+
+    private static int stripeOf(String key){
+        return (key.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private long windowMillis(){
+        return windowSeconds*1000;
+    }
+
+    private static String normalize(String username){
+        return username==null?"":username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("login.limiter.rejected", rejected, LongAdder::sum).register(registry);
+        FunctionCounter.builder("login.limiter.untracked", untracked, LongAdder::sum).register(registry);
+        Gauge.builder("login.limiter.keys", windows, Map::size).register(registry);
+    }
+
+    //Đếm theo 2 cửa sổ cố định liền nhau, các field được bảo vệ bởi lock của stripe
+    private static final class Window {
+        private volatile long windowStart;
+
+        private int current;
+
+        private int previous;
+
+        private void roll(long now, long windowMillis){
+            long start=now-now%windowMillis;
+            if(start==windowStart){
+                return;
+            }
+            previous=start-windowStart==windowMillis?current:0;
+            current=0;
+            windowStart=start;
+        }
+
+        private void add(long now, long windowMillis){
+            roll(now, windowMillis);
+            current++;
+        }
+
+        private long estimate(long now, long windowMillis){
+            roll(now, windowMillis);
+            double previousWeight=1.0-(double) (now-windowStart)/windowMillis;
+            return (long) Math.ceil(previous*previousWeight)+current;
+        }
+
+        private long retryAfterSeconds(long now, long windowMillis){
+            long remaining=windowStart+windowMillis-now;
+            return Math.max(1, (remaining+999)/1000);
+        }
+    }
+}
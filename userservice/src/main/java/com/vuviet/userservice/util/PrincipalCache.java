@@ -0,0 +1,153 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.service.UserPrincipal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//Cache UserPrincipal theo username (không phân biệt hoa thường như collation của MySQL), có TTL và giới hạn kích thước.
+//Các thao tác ghi lên user phải gọi evictAfterCommit để thay đổi có hiệu lực ngay. Có thêm index id -> key cho tra cứu theo id
+@Component
+public class PrincipalCache implements MeterBinder {
+    @Value("${security.principal-cache.ttl:5m}")
+    private Duration ttl;
+
+    @Value("${security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<String, Entry> entries=new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, String> keysById=new ConcurrentHashMap<>();
+
+    private final LongAdder hits=new LongAdder();
+
+    private final LongAdder misses=new LongAdder();
+
+    private final LongAdder evictions=new LongAdder();
+
+    private final AtomicLong lastSweep=new AtomicLong();
+
+    public UserPrincipal get(String username){
+        String key=key(username);
+        Entry entry=entries.get(key);
+        if(entry==null){
+            misses.increment();
+            return null;
+        }
+        if(entry.expiresAt<System.currentTimeMillis()){
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principal;
+    }
+
+    public UserPrincipal getById(long id){
+        String key=keysById.get(id);
+        if(key==null){
+            misses.increment();
+            return null;
+        }
+        UserPrincipal principal=get(key);
+        return principal!=null && principal.getId()==id?principal:null;
+    }
+
+    public void put(UserPrincipal principal){
+        long now=System.currentTimeMillis();
+        if(entries.size()>=maxSize){
+            evictExpired(now);
+            if(entries.size()>=maxSize){
+                return;
+            }
+        }
+        String key=key(principal.getUsername());
+        entries.put(key, new Entry(principal, now+ttl.toMillis()));
+        keysById.put(principal.getId(), key);
+    }
+
+    public void evict(String username){
+        String key=key(username);
+        Entry removed=entries.remove(key);
+        if(removed!=null){
+            keysById.remove(removed.principal.getId(), key);
+            evictions.increment();
+        }
+    }
+
+    //Dùng khi thao tác ghi chỉ biết id (UPDATE theo id, không đọc user). Không có trong index nghĩa là chưa được cache
+    public void evictById(long id){
+        String key=keysById.get(id);
+        if(key!=null){
+            evict(key);
+        }
+    }
+
+    //Xóa sau khi transaction hiện tại commit. Nếu xóa trước commit, login chen vào giữa sẽ đọc bản cũ trong DB
+    //và nạp lại vào cache, /api/users/batch sẽ trả dữ liệu cũ đến hết TTL
+    public void evictAfterCommit(String username){
+        afterCommit(() -> evict(username));
+    }
+
+    public void evictByIdAfterCommit(long id){
+        afterCommit(() -> evictById(id));
+    }
+
+    private static void afterCommit(Runnable action){
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }else{
+            action.run();
+        }
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    private void evictExpired(long now){
+        long last=lastSweep.get();
+        if(now-last<1000 || !lastSweep.compareAndSet(last, now)){
+            return;
+        }
+        entries.values().removeIf(entry -> entry.expiresAt<now);
+        keysById.values().removeIf(key -> !entries.containsKey(key));
+    }
+
+    private static String key(String username){
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("principal.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("principal.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("principal.cache.evictions", evictions, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("principal.cache.size", this, PrincipalCache::size)
+                .register(registry);
+    }
+
+    private record Entry(UserPrincipal principal, long expiresAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.vuviet.userservice.util;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Dùng chung một danh sách authority cho mỗi role thay vì tạo mới ở mỗi request
+public final class RoleAuthorities {
+    private static final ConcurrentHashMap<String, List<GrantedAuthority>> AUTHORITIES=new ConcurrentHashMap<>();
+
+    private RoleAuthorities(){
+    }
+
+    public static List<GrantedAuthority> of(String roleName){
+        return AUTHORITIES.computeIfAbsent(roleName, name -> List.of(new SimpleGrantedAuthority("ROLE_"+name)));
+    }
+}
@@ -0,0 +1,20 @@
+package com.vuviet.userservice.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+
+//Bản chỉ đọc của một Role trong RoleRegistry
+@Getter
+@AllArgsConstructor
+public class RoleInfo {
+    private final long id;
+
+    private final String name;
+
+    private final String description;
+
+    private final List<GrantedAuthority> authorities;
+}
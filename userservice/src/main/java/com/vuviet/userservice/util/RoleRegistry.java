@@ -0,0 +1,77 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.Role;
+import com.vuviet.userservice.repository.RoleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+//Bảng roles chỉ có vài dòng nên giữ toàn bộ trong bộ nhớ, đọc không cần khóa.
+//DataLoader nạp khi khởi động, gặp role chưa biết thì nạp lại từ DB một lần
+@Component
+@Slf4j
+public class RoleRegistry {
+    private final RoleRepository roleRepository;
+
+    private volatile Snapshot snapshot=new Snapshot(List.of());
+
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    public synchronized void reload(){
+        List<RoleInfo> roles=roleRepository.findAll().stream()
+                .map(RoleRegistry::toInfo)
+                .toList();
+        snapshot=new Snapshot(roles);
+        log.info("Loaded {} roles", roles.size());
+    }
+
+    public RoleInfo getByName(String name){
+        RoleInfo role=snapshot.byName.get(name);
+        if(role==null){
+            reload();
+            role=snapshot.byName.get(name);
+        }
+        if(role==null){
+            throw new RuntimeException("Role not found: "+name);
+        }
+        return role;
+    }
+
+    public RoleInfo getById(long id){
+        RoleInfo role=snapshot.byId.get(id);
+        if(role==null){
+            reload();
+            role=snapshot.byId.get(id);
+        }
+        if(role==null){
+            throw new RuntimeException("Role not found: "+id);
+        }
+        return role;
+    }
+
+    //Tên role của user lấy qua id khóa ngoại, không cần join bảng roles
+    public String nameOf(Role role){
+        return getById(role.getId()).getName();
+    }
+
+    private static RoleInfo toInfo(Role role){
+        return new RoleInfo(role.getId(), role.getName(), role.getDescription(), RoleAuthorities.of(role.getName()));
+    }
+
+    private static final class Snapshot {
+        private final Map<String, RoleInfo> byName;
+
+        private final Map<Long, RoleInfo> byId;
+
+        private Snapshot(List<RoleInfo> roles) {
+            this.byName=roles.stream().collect(Collectors.toUnmodifiableMap(RoleInfo::getName, Function.identity()));
+            this.byId=roles.stream().collect(Collectors.toUnmodifiableMap(RoleInfo::getId, Function.identity()));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.vuviet.userservice.util;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+//Mã hóa private key ký JWT trước khi lưu vào DB bằng AES-GCM, key lấy từ cấu hình (không nằm trong DB).
+//kid được dùng làm AAD nên không thể tráo private key giữa các dòng
+@Component
+public class SigningKeyCipher {
+    private static final String PREFIX="v1:";
+
+    private static final String TRANSFORMATION="AES/GCM/NoPadding";
+
+    private static final int IV_BYTES=12;
+
+    private static final int TAG_BITS=128;
+
+    //AES key 128/192/256 bit, Base64
+    @Value("${jwt.keys.encryption-key}")
+    private String encryptionKey;
+
+    private final SecureRandom random=new SecureRandom();
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init(){
+        byte[] raw=Base64.getDecoder().decode(encryptionKey);
+        if(raw.length!=16 && raw.length!=24 && raw.length!=32){
+            throw new IllegalStateException("jwt.keys.encryption-key must be a Base64 AES key of 16, 24 or 32 bytes");
+        }
+        key=new SecretKeySpec(raw, "AES");
+    }
+
+    public String encrypt(String kid, byte[] plain){
+        try {
+            byte[] iv=new byte[IV_BYTES];
+            random.nextBytes(iv);
+            Cipher cipher=Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted=cipher.doFinal(plain);
+            return PREFIX+Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length+encrypted.length).put(iv).put(encrypted).array());
+        }catch (GeneralSecurityException e){
+            throw new IllegalStateException("Cannot encrypt JWT signing key "+kid, e);
+        }
+    }
+
+    public byte[] decrypt(String kid, String stored){
+        if(!isEncrypted(stored)){
+            //Dòng cũ lưu PKCS#8 dạng rõ, JwtKeyStore sẽ mã hóa lại
+            return Base64.getDecoder().decode(stored);
+        }
+        try {
+            byte[] data=Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+            Cipher cipher=Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, data, 0, IV_BYTES));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            return cipher.doFinal(data, IV_BYTES, data.length-IV_BYTES);
+        }catch (GeneralSecurityException e){
+            throw new IllegalStateException("Cannot decrypt JWT signing key "+kid+", check jwt.keys.encryption-key", e);
+        }
+    }
+
+    public boolean isEncrypted(String stored){
+        return stored.startsWith(PREFIX);
+    }
+}
@@ -0,0 +1,112 @@
+package com.vuviet.userservice.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//Gộp các lời gọi đồng thời cùng key thành một lần tính, các thread còn lại chờ và dùng chung kết quả.
+//Kết quả thành công còn được dùng lại trong reuseMillis; lỗi (kể cả Error) thì không giữ lại.
+//Thread chờ chỉ chờ tối đa waitTimeoutMillis, không bị treo nếu lần tính chạy quá lâu
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, Call<V>> calls=new ConcurrentHashMap<>();
+
+    private final long reuseMillis;
+
+    private final long waitTimeoutMillis;
+
+    private final AtomicLong lastSweep=new AtomicLong();
+
+    public SingleFlight(long reuseMillis, long waitTimeoutMillis) {
+        this.reuseMillis = reuseMillis;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    public V execute(K key, Supplier<V> supplier){
+        while (true){
+            long now=System.currentTimeMillis();
+            Call<V> call=calls.get(key);
+            if(call!=null){
+                if(call.isUsable(now, reuseMillis)){
+                    return call.await(waitTimeoutMillis);
+                }
+                calls.remove(key, call);
+            }
+
+            Call<V> mine=new Call<>();
+            if(calls.putIfAbsent(key, mine)!=null){
+                continue;
+            }
+            sweep(now);
+            V value;
+            try {
+                value=supplier.get();
+            }catch (Throwable e){
+                //Bắt cả Error, nếu không Call không bao giờ xong và bị giữ lại trong map
+                calls.remove(key, mine);
+                mine.fail(e);
+                throw e;
+            }
+            mine.complete(value);
+            return value;
+        }
+    }
+
+    //Bỏ kết quả đang giữ, ví dụ khi token đã bị thu hồi
+    public void forget(K key){
+        calls.remove(key);
+    }
+
+    public int size(){
+        return calls.size();
+    }
+
+    //Xóa kết quả đã hết hạn dùng lại, tối đa một lần mỗi giây
+    private void sweep(long now){
+        long last=lastSweep.get();
+        if(now-last<1000 || !lastSweep.compareAndSet(last, now)){
+            return;
+        }
+        calls.values().removeIf(call -> call.completedAt>0 && call.completedAt+reuseMillis<now);
+    }
+
+    private static final class Call<V> {
+        private final CompletableFuture<V> future=new CompletableFuture<>();
+
+        //0 khi chưa xong
+        private volatile long completedAt;
+
+        private boolean isUsable(long now, long reuseMillis){
+            long completed=completedAt;
+            return completed==0 || completed+reuseMillis>=now;
+        }
+
+        private void complete(V value){
+            completedAt=System.currentTimeMillis();
+            future.complete(value);
+        }
+
+        private void fail(Throwable e){
+            future.completeExceptionally(e);
+        }
+
+        private V await(long timeoutMillis){
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for shared result");
+            }catch (TimeoutException e){
+                throw new RuntimeException("Timed out waiting for shared result");
+            }catch (ExecutionException e){
+                if(e.getCause() instanceof RuntimeException cause){
+                    throw cause;
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vuviet.userservice.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+//Kết quả parse một access token, chỉ đọc
+@Getter
+@AllArgsConstructor
+public class TokenClaims {
+    //jti, dùng để thu hồi từng token
+    private final String tokenId;
+
+    private final String username;
+
+    private final Long userId;
+
+    private final String role;
+
+    private final String email;
+
+    //null với token phát hành trước khi có claim này, coi như phiên bản 0
+    private final Integer tokenVersion;
+
+    private final Instant issuedAt;
+
+    private final Instant expiresAt;
+
+    public boolean isExpired(){
+        return expiresAt.isBefore(Instant.now());
+    }
+}
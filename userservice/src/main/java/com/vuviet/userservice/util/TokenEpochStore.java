@@ -0,0 +1,116 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//Phiên bản token hiện tại của từng user (cột token_version), giữ trong bộ nhớ để filter kiểm tra không cần SQL.
+//Token có claim "ver" nhỏ hơn phiên bản hiện tại là token cũ đã bị vô hiệu hóa. User chưa có trong map thì đọc từ DB một lần.
+//Map chỉ được cập nhật trên instance thực hiện thay đổi, chạy nhiều instance thì cần thêm kênh phát thay đổi
+@Component
+@Slf4j
+public class TokenEpochStore implements MeterBinder {
+    //Dùng cho user không tồn tại: mọi token đều bị từ chối
+    private static final int UNKNOWN_USER=Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+
+    private final PrincipalCache principalCache;
+
+    @Value("${security.token-epoch.max-size:100000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<Long, Integer> epochs=new ConcurrentHashMap<>();
+
+    private final LongAdder loads=new LongAdder();
+
+    public TokenEpochStore(UserRepository userRepository, PrincipalCache principalCache) {
+        this.userRepository = userRepository;
+        this.principalCache = principalCache;
+    }
+
+    public boolean isCurrent(TokenClaims claims){
+        if(claims.getUserId()==null){
+            return false;
+        }
+        int version=claims.getTokenVersion()!=null?claims.getTokenVersion():0;
+        return version>=current(claims.getUserId());
+    }
+
+    public int current(Long userId){
+        Integer epoch=epochs.get(userId);
+        if(epoch!=null){
+            return epoch;
+        }
+        if(epochs.size()>=maxSize){
+            //Đầy thì bỏ hết, các user đang hoạt động sẽ được nạp lại dần
+            epochs.clear();
+        }
+        return epochs.computeIfAbsent(userId, id -> {
+            loads.increment();
+            return userRepository.findTokenVersionById(id).orElse(UNKNOWN_USER);
+        });
+    }
+
+    //Ghi nhận phiên bản đọc được lúc login, tránh một lần đọc DB ở request kế tiếp
+    public void observe(long userId, int version){
+        epochs.merge(userId, version, Math::max);
+    }
+
+    //Gọi sau khi đã tăng token_version của user trong transaction hiện tại. Map và PrincipalCache chỉ được cập nhật
+    //sau khi commit, để login chen vào giữa không nạp lại phiên bản cũ vào cache
+    public void bump(long userId, String username, int newVersion){
+        Runnable apply=() -> {
+            epochs.merge(userId, newVersion, Math::max);
+            principalCache.evict(username);
+            log.debug("Token version of user {} is now {}", userId, newVersion);
+        };
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        }else{
+            apply.run();
+        }
+    }
+
+    //Như bump nhưng dùng khi câu UPDATE đã tự tăng token_version thêm 1 mà không đọc user trước.
+    //User chưa có trong map thì lần kiểm tra sau tự đọc giá trị mới từ DB
+    public void increment(long userId){
+        Runnable apply=() -> {
+            epochs.computeIfPresent(userId, (id, version) -> version+1);
+            principalCache.evictById(userId);
+            log.debug("Token version of user {} incremented", userId);
+        };
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        }else{
+            apply.run();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.token.epoch.loads", loads, LongAdder::sum).register(registry);
+        Gauge.builder("jwt.token.epoch.size", epochs, Map::size).register(registry);
+    }
+}
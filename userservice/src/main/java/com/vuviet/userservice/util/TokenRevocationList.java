@@ -0,0 +1,152 @@
+package com.vuviet.userservice.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Danh sách access token (jti) đã bị thu hồi trước khi hết hạn, ví dụ khi logout. Thu hồi mọi token của một user dùng TokenEpochStore.
+//Bloom filter đứng trước map: phần lớn request không bị thu hồi chỉ tốn vài phép băm và đọc bit, không cấp phát.
+//Mục tự hết hạn khi token tương ứng hết hạn; bloom filter được dựng lại định kỳ từ các mục còn sống
+@Component
+@Slf4j
+public class TokenRevocationList implements MeterBinder {
+    private static final int HASHES=4;
+
+    //Số bit, làm tròn lên lũy thừa của 2
+    @Value("${security.revocation.bloom-bits:1048576}")
+    private int bloomBits;
+
+    //jti -> thời điểm token hết hạn (epoch millis)
+    private final ConcurrentHashMap<String, Long> revokedTokens=new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloom;
+
+    private final LongAdder allowed=new LongAdder();
+
+    private final LongAdder rejected=new LongAdder();
+
+    @PostConstruct
+    public void init(){
+        bloom=new BloomFilter(bloomBits);
+    }
+
+    public void revokeToken(String tokenId, Instant expiresAt){
+        if(tokenId==null || expiresAt.isBefore(Instant.now())){
+            return;
+        }
+        revokedTokens.put(tokenId, expiresAt.toEpochMilli());
+        BloomFilter current=bloom;
+        current.add(hashToken(tokenId));
+    }
+
+    public boolean isRevoked(TokenClaims claims){
+        BloomFilter current=bloom;
+        boolean revoked=claims.getTokenId()!=null
+                && current.mightContain(hashToken(claims.getTokenId()))
+                && revokedTokens.containsKey(claims.getTokenId());
+        if(revoked){
+            rejected.increment();
+        }else{
+            allowed.increment();
+        }
+        return revoked;
+    }
+
+    //Bỏ các mục đã hết hạn và dựng lại bloom filter, nếu không filter chỉ đầy dần lên
+    @Scheduled(fixedDelayString = "${security.revocation.rebuild-interval-ms:60000}")
+    public synchronized void purgeExpired(){
+        long now=System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt<now);
+
+        BloomFilter rebuilt=new BloomFilter(bloomBits);
+        revokedTokens.keySet().forEach(tokenId -> rebuilt.add(hashToken(tokenId)));
+        bloom=rebuilt;
+
+        //Mục được thêm trong lúc dựng có thể chỉ nằm ở filter cũ, thêm lại vào filter mới
+        revokedTokens.keySet().forEach(tokenId -> rebuilt.add(hashToken(tokenId)));
+        log.debug("Revocation list rebuilt, {} entries", size());
+    }
+
+    public int size(){
+        return revokedTokens.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.revocation.checks", allowed, LongAdder::sum)
+                .tag("result", "allowed")
+                .register(registry);
+        FunctionCounter.builder("jwt.revocation.checks", rejected, LongAdder::sum)
+                .tag("result", "revoked")
+                .register(registry);
+        Gauge.builder("jwt.revocation.entries", this, TokenRevocationList::size).register(registry);
+    }
+
+    private static long hashToken(String tokenId){
+        return mix(tokenId.hashCode());
+    }
+
+    //Bước finalizer của MurmurHash3 (fmix64)
+    private static long mix(long value){
+        long h=value;
+        h^=h>>>33;
+        h*=0xff51afd7ed558ccdL;
+        h^=h>>>33;
+        h*=0xc4ceb9fe1a85ec53L;
+        h^=h>>>33;
+        return h;
+    }
+
+    //Bloom filter trên AtomicLongArray, k vị trí bit sinh từ hai nửa của hash 64 bit (Kirsch–Mitzenmacher)
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+
+        private final int mask;
+
+        private BloomFilter(int bits) {
+            int size=Integer.highestOneBit(Math.max(64, bits-1))<<1;
+            this.words=new AtomicLongArray(size>>>6);
+            this.mask=size-1;
+        }
+
+        private void add(long hash){
+            int h1=(int) hash;
+            int h2=(int) (hash>>>32);
+            for(int i=0;i<HASHES;i++){
+                int bit=(h1+i*h2) & mask;
+                long flag=1L<<(bit & 63);
+                int index=bit>>>6;
+                long word;
+                do {
+                    word=words.get(index);
+                    if((word & flag)!=0){
+                        break;
+                    }
+                }while (!words.compareAndSet(index, word, word|flag));
+            }
+        }
+
+        private boolean mightContain(long hash){
+            int h1=(int) hash;
+            int h2=(int) (hash>>>32);
+            for(int i=0;i<HASHES;i++){
+                int bit=(h1+i*h2) & mask;
+                if((words.get(bit>>>6) & (1L<<(bit & 63)))==0){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.vuviet.userservice.util;
+
+import java.util.Locale;
+
+//Tên unique constraint của bảng users, dùng để biết insert/update bị trùng cột nào
+//mà không cần query kiểm tra trước
+public final class UserConstraints {
+    public static final String USERNAME="uk_users_username";
+
+    public static final String EMAIL="uk_users_email";
+
+    private UserConstraints(){
+    }
+
+    public static boolean isDuplicateUsername(RuntimeException e){
+        return violates(e, USERNAME);
+    }
+
+    public static boolean isDuplicateEmail(RuntimeException e){
+        return violates(e, EMAIL);
+    }
+
+    //MySQL báo "Duplicate entry ... for key 'users.uk_users_email'", H2 báo tên index, nên so theo chuỗi con.
+    //Nhận cả DataIntegrityViolationException của repository lẫn PersistenceException của EntityManager
+    private static boolean violates(RuntimeException e, String constraint){
+        for(Throwable cause=e; cause!=null; cause=cause.getCause()){
+            if(cause instanceof org.hibernate.exception.ConstraintViolationException violation
+                    && violation.getConstraintName()!=null
+                    && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(constraint)){
+                return true;
+            }
+        }
+        Throwable root=e;
+        while(root.getCause()!=null && root.getCause()!=root){
+            root=root.getCause();
+        }
+        String message=root.getMessage();
+        return message!=null && message.toLowerCase(Locale.ROOT).contains(constraint);
+    }
+}
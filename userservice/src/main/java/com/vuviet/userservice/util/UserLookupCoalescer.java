@@ -0,0 +1,127 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.response.UserSummaryResponse;
+import com.vuviet.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Gộp các lượt tra cứu user theo id đến gần nhau thành một câu IN duy nhất.
+//Request đầu tiên mở lô, chờ một khoảng ngắn cho các request khác góp id rồi tự chạy query; các request còn lại chỉ chờ kết quả
+@Component
+@Slf4j
+public class UserLookupCoalescer implements MeterBinder {
+    private final UserRepository userRepository;
+
+    @Value("${users.batch.coalesce-window-ms:2}")
+    private long windowMillis;
+
+    @Value("${users.batch.max-coalesced-ids:1000}")
+    private int maxCoalescedIds;
+
+    @Value("${users.batch.wait-timeout-ms:5000}")
+    private long waitTimeoutMs;
+
+    private final Object lock=new Object();
+
+    //Lô đang nhận thêm id, null nếu chưa có
+    private Batch open;
+
+    private final LongAdder requests=new LongAdder();
+
+    private final LongAdder queries=new LongAdder();
+
+    public UserLookupCoalescer(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public Map<Long, UserSummaryResponse> lookup(Collection<Long> ids){
+        requests.increment();
+        Batch batch;
+        boolean leader=false;
+        synchronized (lock){
+            if(open==null || open.ids.size()+ids.size()>maxCoalescedIds){
+                open=new Batch();
+                leader=true;
+            }
+            batch=open;
+            batch.ids.addAll(ids);
+        }
+
+        if(leader){
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(windowMillis));
+            synchronized (lock){
+                if(open==batch){
+                    open=null;
+                }
+            }
+            batch.execute();
+        }
+
+        try {
+            Map<Long, UserSummaryResponse> loaded=batch.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            Map<Long, UserSummaryResponse> found=new HashMap<>();
+            for(Long id: ids){
+                UserSummaryResponse user=loaded.get(id);
+                if(user!=null){
+                    found.put(id, user);
+                }
+            }
+            return found;
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("User lookup interrupted");
+        }catch (ExecutionException e){
+            throw new RuntimeException("User lookup failed", e.getCause());
+        }catch (TimeoutException e){
+            throw new RuntimeException("User lookup timed out");
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.lookup.requests", requests, LongAdder::sum).register(registry);
+        FunctionCounter.builder("user.lookup.queries", queries, LongAdder::sum).register(registry);
+    }
+
+    private final class Batch {
+        //Chỉ sửa khi giữ lock và trước khi lô bị đóng
+        private final Set<Long> ids=new HashSet<>();
+
+        private final CompletableFuture<Map<Long, UserSummaryResponse>> result=new CompletableFuture<>();
+
+        private void execute(){
+            try {
+                List<Long> snapshot;
+                synchronized (lock){
+                    snapshot=List.copyOf(ids);
+                }
+                queries.increment();
+                Map<Long, UserSummaryResponse> loaded=new HashMap<>();
+                for(UserSummaryResponse user: userRepository.findSummariesByIdIn(snapshot)){
+                    loaded.put(user.getId(), user);
+                }
+                log.debug("Coalesced user lookup: {} ids in one query", snapshot.size());
+                result.complete(loaded);
+            }catch (RuntimeException e){
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.response.UserSuggestionResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+//Index tiền tố trong bộ nhớ cho ô tìm kiếm user của admin (username, email, từng từ của họ tên).
+//Phần chính là mảng key đã sắp xếp + mảng cột, không có object cho từng user; các từ trong họ tên được dùng chung.
+//Thay đổi mới ghi vào delta, định kỳ gộp lại thành mảng mới. Key bỏ dấu tiếng Việt nên gõ "nguyen" vẫn ra "Nguyễn"
+@Component
+@Slf4j
+public class UserTypeaheadIndex implements MeterBinder {
+    private static final Pattern MARKS=Pattern.compile("\\p{M}+");
+
+    private static final Pattern SPACES=Pattern.compile("\\s+");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //Delta được quét tuyến tính nên giữ nhỏ
+    @Value("${typeahead.compact-threshold:256}")
+    private int compactThreshold;
+
+    //Giới hạn số key quét cho một truy vấn, tránh prefix quá ngắn quét cả index
+    @Value("${typeahead.max-scan:2000}")
+    private int maxScan;
+
+    private volatile Base base=Base.EMPTY;
+
+    //User thêm/sửa sau lần build gần nhất, ưu tiên hơn dữ liệu trong base. Key đã chuẩn hóa sẵn lúc put
+    private final ConcurrentHashMap<Long, DeltaEntry> delta=new ConcurrentHashMap<>();
+
+    public UserTypeaheadIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    //Nạp sau khi khởi động xong (sau DataLoader), trước đó truy vấn chỉ thấy delta
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load(){
+        long startedAt=System.currentTimeMillis();
+        //Delta ghi trước lúc đọc DB đã nằm trong kết quả đọc, xóa sau khi build. Bản bị sửa tiếp trong lúc đọc thì giữ lại
+        Map<Long, DeltaEntry> loaded=new HashMap<>(delta);
+        List<UserSuggestionResponse> users=new ArrayList<>();
+        jdbcTemplate.query("SELECT id, username, email, full_name FROM users", rs -> {
+            users.add(new UserSuggestionResponse(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+        });
+        replaceAll(users);
+        loaded.forEach(delta::remove);
+        log.info("Typeahead index loaded {} users in {} ms", users.size(), System.currentTimeMillis()-startedAt);
+    }
+
+    //Dùng sau khi import hàng loạt, các dòng được ghi bằng JDBC nên không đi qua put
+    @Async
+    public void reloadAsync(){
+        load();
+    }
+
+    public synchronized void replaceAll(List<UserSuggestionResponse> users){
+        base=Base.build(users);
+    }
+
+    public void put(User user){
+        put(new UserSuggestionResponse(user.getId(), user.getUsername(), user.getEmail(), user.getFullName()));
+    }
+
+    public void put(UserSuggestionResponse user){
+        delta.put(user.getId(), DeltaEntry.of(user));
+    }
+
+    //Top-k user có username, email hoặc một từ trong họ tên bắt đầu bằng query, theo thứ tự key
+    public List<UserSuggestionResponse> search(String query, int limit){
+        String prefix=normalize(query);
+        if(prefix.isEmpty() || limit<=0){
+            return List.of();
+        }
+        Base current=base;
+        Map<Long, UserSuggestionResponse> results=new LinkedHashMap<>();
+
+        int start=current.lowerBound(prefix);
+        int end=Math.min(current.keys.length, start+maxScan);
+        for(int i=start;i<end && results.size()<limit;i++){
+            if(!current.keys[i].startsWith(prefix)){
+                break;
+            }
+            int row=current.rows[i];
+            long id=current.ids[row];
+            //Đã sửa sau lần build thì bỏ bản cũ, bản mới nằm trong delta
+            if(!delta.containsKey(id) && !results.containsKey(id)){
+                results.put(id, current.user(row));
+            }
+        }
+        for(DeltaEntry entry: delta.values()){
+            if(results.size()>=limit){
+                break;
+            }
+            if(entry.matches(prefix)){
+                results.putIfAbsent(entry.user().getId(), entry.user());
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    //Gộp delta vào base khi delta đủ lớn, quét delta tuyến tính chỉ rẻ khi delta nhỏ
+    @Scheduled(fixedDelayString = "${typeahead.compact-interval-ms:10000}")
+    public synchronized void compact(){
+        if(delta.size()<compactThreshold){
+            return;
+        }
+        Map<Long, DeltaEntry> changed=new HashMap<>(delta);
+        Base current=base;
+        List<UserSuggestionResponse> users=new ArrayList<>(current.ids.length+changed.size());
+        for(int row=0;row<current.ids.length;row++){
+            if(!changed.containsKey(current.ids[row])){
+                users.add(current.user(row));
+            }
+        }
+        changed.values().forEach(entry -> users.add(entry.user()));
+        base=Base.build(users);
+        //Chỉ xóa khỏi delta nếu không bị sửa tiếp trong lúc build
+        changed.forEach(delta::remove);
+        log.debug("Typeahead index compacted, {} users", users.size());
+    }
+
+    public int size(){
+        return base.ids.length+delta.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("typeahead.index.users", this, UserTypeaheadIndex::size).register(registry);
+        Gauge.builder("typeahead.index.delta", delta, Map::size).register(registry);
+    }
+
+    //Chữ thường, bỏ dấu. Chuỗi ASCII đã là chữ thường thì trả lại chính nó, không tạo chuỗi mới
+    static String normalize(String value){
+        if(value==null){
+            return "";
+        }
+        String lower=value.trim().toLowerCase(Locale.ROOT);
+        for(int i=0;i<lower.length();i++){
+            if(lower.charAt(i)>127){
+                return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("").replace('đ', 'd');
+            }
+        }
+        return lower;
+    }
+
+    //Ảnh chụp bất biến của index: cột theo user (ids, usernames, emails, fullNames) và key đã sắp xếp trỏ về số dòng
+    private static final class Base {
+        private static final Base EMPTY=new Base(new long[0], new String[0], new String[0], new String[0], new String[0], new int[0]);
+
+        private final long[] ids;
+
+        private final String[] usernames;
+
+        private final String[] emails;
+
+        private final String[] fullNames;
+
+        private final String[] keys;
+
+        private final int[] rows;
+
+        private Base(long[] ids, String[] usernames, String[] emails, String[] fullNames, String[] keys, int[] rows) {
+            this.ids = ids;
+            this.usernames = usernames;
+            this.emails = emails;
+            this.fullNames = fullNames;
+            this.keys = keys;
+            this.rows = rows;
+        }
+
+        private static Base build(List<UserSuggestionResponse> users){
+            int size=users.size();
+            long[] ids=new long[size];
+            String[] usernames=new String[size];
+            String[] emails=new String[size];
+            String[] fullNames=new String[size];
+            //Dùng chung một instance cho các chuỗi trùng nhau (họ, tên đệm, tên hay gặp)
+            Map<String, String> pool=new HashMap<>();
+            List<Posting> postings=new ArrayList<>(size*4);
+
+            for(int row=0;row<size;row++){
+                UserSuggestionResponse user=users.get(row);
+                ids[row]=user.getId();
+                usernames[row]=user.getUsername();
+                emails[row]=user.getEmail();
+                fullNames[row]=user.getFullName()!=null?pool.computeIfAbsent(user.getFullName(), name -> name):null;
+
+                postings.add(new Posting(normalize(user.getUsername()), row));
+                postings.add(new Posting(normalize(user.getEmail()), row));
+                String fullName=normalize(user.getFullName());
+                if(!fullName.isEmpty()){
+                    postings.add(new Posting(pool.computeIfAbsent(fullName, name -> name), row));
+                    String[] words=SPACES.split(fullName);
+                    //Từ đầu tiên đã là tiền tố của cả họ tên
+                    for(int w=1;w<words.length;w++){
+                        postings.add(new Posting(pool.computeIfAbsent(words[w], word -> word), row));
+                    }
+                }
+            }
+
+            Posting[] sorted=postings.toArray(new Posting[0]);
+            Arrays.parallelSort(sorted);
+            String[] keys=new String[sorted.length];
+            int[] rows=new int[sorted.length];
+            for(int i=0;i<sorted.length;i++){
+                keys[i]=sorted[i].key;
+                rows[i]=sorted[i].row;
+            }
+            return new Base(ids, usernames, emails, fullNames, keys, rows);
+        }
+
+        //Vị trí đầu tiên có key >= prefix
+        private int lowerBound(String prefix){
+            int low=0;
+            int high=keys.length;
+            while (low<high){
+                int mid=(low+high)>>>1;
+                if(keys[mid].compareTo(prefix)<0){
+                    low=mid+1;
+                }else{
+                    high=mid;
+                }
+            }
+            return low;
+        }
+
+        private UserSuggestionResponse user(int row){
+            return new UserSuggestionResponse(ids[row], usernames[row], emails[row], fullNames[row]);
+        }
+    }
+
+    //User trong delta kèm các key đã chuẩn hóa (username, email, họ tên, từng từ của họ tên), truy vấn chỉ so tiền tố
+    private record DeltaEntry(UserSuggestionResponse user, String[] keys) {
+        private static DeltaEntry of(UserSuggestionResponse user){
+            List<String> keys=new ArrayList<>(6);
+            keys.add(normalize(user.getUsername()));
+            keys.add(normalize(user.getEmail()));
+            String fullName=normalize(user.getFullName());
+            if(!fullName.isEmpty()){
+                keys.add(fullName);
+                String[] words=SPACES.split(fullName);
+                for(int w=1;w<words.length;w++){
+                    keys.add(words[w]);
+                }
+            }
+            return new DeltaEntry(user, keys.toArray(new String[0]));
+        }
+
+        private boolean matches(String prefix){
+            for(String key: keys){
+                if(key.startsWith(prefix)){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Posting(String key, int row) implements Comparable<Posting> {
+        @Override
+        public int compareTo(Posting other) {
+            int compare=key.compareTo(other.key);
+            return compare!=0?compare:Integer.compare(row, other.row);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.vuviet.userservice.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//Cache các access token đã verify, key là digest của token, tự hết hạn theo exp của token
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+    private static final long SWEEP_INTERVAL_MS=1000;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<String, TokenClaims> entries=new ConcurrentHashMap<>();
+
+    private final LongAdder hits=new LongAdder();
+
+    private final LongAdder misses=new LongAdder();
+
+    private final AtomicLong lastSweep=new AtomicLong();
+
+    public TokenClaims get(String digest){
+        TokenClaims claims=entries.get(digest);
+        if(claims==null){
+            misses.increment();
+            return null;
+        }
+        if(claims.isExpired()){
+            entries.remove(digest, claims);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return claims;
+    }
+
+    public void put(String digest, TokenClaims claims){
+        if(entries.size()>=maxSize){
+            evictExpired();
+            //Cache đầy token còn hạn thì bỏ qua, lần sau parse lại
+            if(entries.size()>=maxSize){
+                return;
+            }
+        }
+        entries.put(digest, claims);
+    }
+
+    public void invalidate(String digest){
+        entries.remove(digest);
+    }
+
+    public long getHitCount(){
+        return hits.sum();
+    }
+
+    public long getMissCount(){
+        return misses.sum();
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    //Xóa token đã hết hạn, tối đa một lần mỗi giây để không quét map liên tục khi cache đầy
+    private void evictExpired(){
+        long now=System.currentTimeMillis();
+        long last=lastSweep.get();
+        if(now-last<SWEEP_INTERVAL_MS || !lastSweep.compareAndSet(last, now)){
+            return;
+        }
+        entries.values().removeIf(TokenClaims::isExpired);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.token.cache.requests", this, VerifiedTokenCache::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("jwt.token.cache.requests", this, VerifiedTokenCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("jwt.token.cache.size", this, VerifiedTokenCache::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,68 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.entity.request.LoginDto;
+import com.vuviet.userservice.entity.request.RegisterDto;
+import com.vuviet.userservice.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Chỉ health là công khai, metrics/prometheus cần quyền admin
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:quiz_actuator;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class ActuatorAccessTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuthService authService;
+
+    @Test
+    void healthIsPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void anonymousAndStudentCannotReadMetrics() throws Exception {
+        mockMvc.perform(get("/actuator/metrics"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isForbidden());
+
+        RegisterDto registerDto=new RegisterDto();
+        registerDto.setUsername("scraper");
+        registerDto.setPassword("123456");
+        registerDto.setEmail("scraper@gmail.com");
+        registerDto.setFullName("Curious Scraper");
+        authService.register(registerDto);
+        String token=login("scraper");
+
+        mockMvc.perform(get("/actuator/metrics").header("Authorization", "Bearer "+token))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer "+token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void adminCanReadMetrics() throws Exception {
+        String token=login("admin");
+
+        mockMvc.perform(get("/actuator/metrics").header("Authorization", "Bearer "+token))
+                .andExpect(status().isOk());
+    }
+
+    private String login(String username){
+        LoginDto loginDto=new LoginDto();
+        loginDto.setUsername(username);
+        loginDto.setPassword("123456");
+        return authService.login(loginDto).getAccessToken();
+    }
+}
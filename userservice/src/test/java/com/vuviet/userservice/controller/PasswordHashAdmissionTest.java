@@ -0,0 +1,57 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.util.BoundedPasswordEncoder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Pool BCrypt một thread, không cho chờ: khi đang có một lần hash chạy, request tiếp theo phải nhận 503 ngay
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:quiz_admission;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "security.password.pool-size=1",
+        "security.password.max-queued-per-thread=0",
+        "security.password.retry-after-seconds=3"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class PasswordHashAdmissionTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Test
+    void registerIsRejectedWithRetryAfterWhileHashingCapacityIsFull() throws Exception {
+        //BCrypt lấy cost từ hash, cost 14 giữ thread hash bận khoảng một giây
+        String slowHash=new BCryptPasswordEncoder(14).encode("secret");
+        CompletableFuture<Boolean> busy=CompletableFuture.supplyAsync(() -> passwordEncoder.matches("secret", slowHash));
+        while (passwordEncoder.pending()==0){
+            Thread.sleep(1);
+        }
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"busy\",\"password\":\"123456\",\"email\":\"busy@gmail.com\",\"fullName\":\"Busy\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"));
+        //Bị từ chối ngay trong lúc hash kia còn chạy, không chờ đến lượt
+        assertThat(busy).isNotDone();
+
+        assertThat(busy.get(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(passwordEncoder.pending()).isZero();
+    }
+}
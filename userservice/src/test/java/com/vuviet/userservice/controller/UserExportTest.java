@@ -0,0 +1,39 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.entity.request.LoginDto;
+import com.vuviet.userservice.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Export đọc bằng fetch size của cấu hình, profile h2 phải dùng giá trị H2 chấp nhận
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:quiz_export;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class UserExportTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuthService authService;
+
+    @Test
+    void exportStreamsUsersOnH2() throws Exception {
+        LoginDto loginDto=new LoginDto();
+        loginDto.setUsername("admin");
+        loginDto.setPassword("123456");
+        String token=authService.login(loginDto).getAccessToken();
+
+        mockMvc.perform(get("/api/admin/users/export").param("format", "csv").header("Authorization", "Bearer "+token))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("admin@gmail.com")));
+    }
+}
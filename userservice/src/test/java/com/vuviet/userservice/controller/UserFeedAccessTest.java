@@ -0,0 +1,65 @@
+package com.vuviet.userservice.controller;
+
+import com.vuviet.userservice.entity.request.LoginDto;
+import com.vuviet.userservice.entity.request.RegisterDto;
+import com.vuviet.userservice.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Change feed và batch lookup trả dữ liệu của mọi user, chỉ dành cho admin và service khác
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:quiz_feed;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class UserFeedAccessTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AuthService authService;
+
+    @Test
+    void studentCannotReadChangeFeedOrBatch() throws Exception {
+        RegisterDto registerDto=new RegisterDto();
+        registerDto.setUsername("curious");
+        registerDto.setPassword("123456");
+        registerDto.setEmail("curious@gmail.com");
+        registerDto.setFullName("Curious Student");
+        authService.register(registerDto);
+        String token=login("curious");
+
+        mockMvc.perform(get("/api/users/changes").header("Authorization", "Bearer "+token))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/users/batch").header("Authorization", "Bearer "+token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1]}"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void adminCanReadChangeFeedAndBatch() throws Exception {
+        String token=login("admin");
+
+        mockMvc.perform(get("/api/users/changes").header("Authorization", "Bearer "+token))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/users/batch").header("Authorization", "Bearer "+token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1]}"))
+                .andExpect(status().isOk());
+    }
+
+    private String login(String username){
+        LoginDto loginDto=new LoginDto();
+        loginDto.setUsername(username);
+        loginDto.setPassword("123456");
+        return authService.login(loginDto).getAccessToken();
+    }
+}
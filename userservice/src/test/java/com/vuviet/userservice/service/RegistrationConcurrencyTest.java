@@ -0,0 +1,95 @@
+package com.vuviet.userservice.service;
+
+import com.vuviet.userservice.entity.request.RegisterDto;
+import com.vuviet.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Đủ chỗ trong pool BCrypt cho cả 16 lượt đăng ký, test này chỉ kiểm tra race ở DB
+@SpringBootTest(properties = "security.password.max-queued-per-thread=16")
+@ActiveProfiles("h2")
+class RegistrationConcurrencyTest {
+    private static final int THREADS=16;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void concurrentSignupsWithSameUsernameCreateExactlyOneUser() throws Exception {
+        ExecutorService executor=Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start=new CountDownLatch(1);
+        List<Future<String>> results=new ArrayList<>();
+        for(int i=0;i<THREADS;i++){
+            RegisterDto registerDto=registerDto("race", "race"+i+"@gmail.com");
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return authService.register(registerDto);
+                }catch (RuntimeException e){
+                    return e.getMessage();
+                }
+            }));
+        }
+        start.countDown();
+
+        List<String> messages=new ArrayList<>();
+        for(Future<String> result: results){
+            messages.add(result.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertThat(messages).filteredOn("User registered successfully"::equals).hasSize(1);
+        assertThat(messages).filteredOn("User already exists"::equals).hasSize(THREADS-1);
+        assertThat(userRepository.findByUsername("race")).isPresent();
+    }
+
+    @Test
+    void duplicateEmailIsReportedAsEmailConflict() {
+        authService.register(registerDto("first", "shared@gmail.com"));
+
+        assertThatThrownBy(() -> authService.register(registerDto("second", "shared@gmail.com")))
+                .hasMessage("Email already exists");
+    }
+
+    @Test
+    void registrationIsSingleInsert() {
+        Statistics statistics=entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        authService.register(registerDto("single", "single@gmail.com"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+    }
+
+    private static RegisterDto registerDto(String username, String email){
+        RegisterDto registerDto=new RegisterDto();
+        registerDto.setUsername(username);
+        registerDto.setPassword("123456");
+        registerDto.setEmail(email);
+        registerDto.setFullName("Test "+username);
+        return registerDto;
+    }
+}
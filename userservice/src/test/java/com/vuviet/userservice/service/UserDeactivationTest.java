@@ -0,0 +1,70 @@
+package com.vuviet.userservice.service;
+
+import com.vuviet.userservice.entity.request.LoginDto;
+import com.vuviet.userservice.entity.request.RegisterDto;
+import com.vuviet.userservice.entity.response.JwtResponse;
+import com.vuviet.userservice.repository.RefreshTokenRepository;
+import com.vuviet.userservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Khóa user phải đăng xuất mọi nơi: refresh token cũ không đổi được access token mới
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:quiz_deactivation;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@ActiveProfiles("h2")
+class UserDeactivationTest {
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Test
+    void deactivationRevokesRefreshSessions() {
+        JwtResponse session=registerAndLogin("locked");
+        long id=session.getId();
+
+        userService.deactivateUser(id);
+
+        assertThat(refreshTokenRepository.findAll()).noneMatch(token -> token.getUser().getId()==id);
+        assertThatThrownBy(() -> authService.refreshToken(session.getRefreshToken()))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void inactiveUserCannotRefreshWithLeftoverSession() {
+        JwtResponse session=registerAndLogin("leftover");
+        //Mô phỏng phiên còn sót lại: chỉ đổi cờ is_active, không thu hồi phiên
+        userRepository.findById(session.getId()).ifPresent(user -> {
+            user.setIsActive(false);
+            userRepository.save(user);
+        });
+
+        assertThatThrownBy(() -> authService.refreshToken(session.getRefreshToken()))
+                .hasMessage("User account is deactivated");
+    }
+
+    private JwtResponse registerAndLogin(String username){
+        RegisterDto registerDto=new RegisterDto();
+        registerDto.setUsername(username);
+        registerDto.setPassword("123456");
+        registerDto.setEmail(username+"@gmail.com");
+        registerDto.setFullName("Test "+username);
+        authService.register(registerDto);
+
+        LoginDto loginDto=new LoginDto();
+        loginDto.setUsername(username);
+        loginDto.setPassword("123456");
+        return authService.login(loginDto);
+    }
+}
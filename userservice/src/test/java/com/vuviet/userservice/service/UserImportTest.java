@@ -0,0 +1,124 @@
+package com.vuviet.userservice.service;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.request.UserFileFormat;
+import com.vuviet.userservice.entity.response.BulkImportResponse;
+import com.vuviet.userservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.reset;
+
+//Import qua H2 với file nhỏ, mỗi test dùng username riêng nên không phụ thuộc thứ tự chạy
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:quiz_import;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "import.batch-size=3"
+})
+@ActiveProfiles("h2")
+class UserImportTest {
+    @Autowired
+    private UserImportService userImportService;
+
+    @MockitoSpyBean
+    private UserRepository userRepository;
+
+    @Test
+    void csvQuotedFieldsAreParsed() {
+        BulkImportResponse result=importCsv(
+                "username,password,email,full_name,role_name\n" +
+                "quoted,123456,quoted@gmail.com,\"Nguyễn, \"\"Bé\"\" An\",STUDENT\n");
+
+        assertThat(result.getImported()).isEqualTo(1);
+        User user=userRepository.findByUsername("quoted").orElseThrow();
+        assertThat(user.getFullName()).isEqualTo("Nguyễn, \"Bé\" An");
+    }
+
+    @Test
+    void duplicatesAndUnknownRolesAreReportedPerRow() {
+        BulkImportResponse result=importCsv(
+                "username,password,email,fullName,roleName\n" +
+                "dup1,123456,dup1@gmail.com,Dup One,STUDENT\n" +
+                "DUP1,123456,dup1b@gmail.com,Dup Again,STUDENT\n" +
+                "dup2,123456,DUP1@gmail.com,Dup Email,STUDENT\n" +
+                "admin,123456,other-admin@gmail.com,Existing User,STUDENT\n" +
+                "dup3,123456,admin@gmail.com,Existing Email,STUDENT\n" +
+                "ghost,123456,ghost@gmail.com,Ghost,GHOST\n" +
+                "unterminated,123456,u@gmail.com,\"Open,STUDENT\n");
+
+        assertThat(result.getTotal()).isEqualTo(7);
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(BulkImportResponse.RowError::getLine, BulkImportResponse.RowError::getMessage)
+                .containsExactlyInAnyOrder(
+                        tuple(3L, "Duplicate username in file"),
+                        tuple(4L, "Duplicate email in file"),
+                        tuple(5L, "Username already exists"),
+                        tuple(6L, "Email already exists"),
+                        tuple(7L, "Role not found: GHOST"),
+                        tuple(8L, "Unterminated quoted value"));
+    }
+
+    //Trùng lặp không bị phát hiện khi kiểm tra trước (như user được tạo đồng thời) thì batch insert lỗi, ghi lại từng dòng
+    @Test
+    void batchFailureFallsBackToRowByRowInsert() {
+        importCsv("username,password,email,fullName,roleName\n" +
+                "race1,123456,race1@gmail.com,Race One,STUDENT\n");
+        doReturn(List.of()).when(userRepository).findExistingUsernames(anyCollection());
+        try {
+            BulkImportResponse result=importCsv(
+                    "username,password,email,fullName,roleName\n" +
+                    "race2,123456,race2@gmail.com,Race Two,STUDENT\n" +
+                    "race1,123456,race1b@gmail.com,Race One Again,STUDENT\n" +
+                    "race3,123456,race3@gmail.com,Race Three,STUDENT\n");
+
+            assertThat(result.getImported()).isEqualTo(2);
+            assertThat(result.getErrors()).extracting(BulkImportResponse.RowError::getUsername, BulkImportResponse.RowError::getMessage)
+                    .containsExactly(tuple("race1", "Username already exists"));
+            assertThat(userRepository.findByUsername("race2")).isPresent();
+            assertThat(userRepository.findByUsername("race3")).isPresent();
+        }finally {
+            reset(userRepository);
+        }
+    }
+
+    //BCrypt từ chối mật khẩu dài hơn 72 byte: dòng đó bị báo lỗi, các dòng khác vẫn được ghi
+    @Test
+    void hashingFailureIsReportedAndImportContinues() {
+        BulkImportResponse result=importCsv(
+                "username,password,email,fullName,roleName\n" +
+                "long1,"+"x".repeat(100)+",long1@gmail.com,Long Password,STUDENT\n" +
+                "long2,123456,long2@gmail.com,Short Password,STUDENT\n" +
+                "long3,123456,long3@gmail.com,Next Chunk,STUDENT\n" +
+                "long4,123456,long4@gmail.com,Next Chunk,STUDENT\n");
+
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(BulkImportResponse.RowError::getUsername, BulkImportResponse.RowError::getMessage)
+                .containsExactly(tuple("long1", "Password hashing failed"));
+    }
+
+    @Test
+    void ndjsonRowsAreImported() {
+        BulkImportResponse result=userImportService.importUsers(new ByteArrayInputStream((
+                "{\"username\":\"json1\",\"password\":\"123456\",\"email\":\"json1@gmail.com\",\"fullName\":\"Json One\",\"roleName\":\"TEACHER\"}\n" +
+                "\n" +
+                "{not json}\n").getBytes(StandardCharsets.UTF_8)), UserFileFormat.NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(BulkImportResponse.RowError::getLine, BulkImportResponse.RowError::getMessage)
+                .containsExactly(tuple(3L, "Invalid JSON"));
+    }
+
+    private BulkImportResponse importCsv(String csv){
+        return userImportService.importUsers(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), UserFileFormat.CSV);
+    }
+}
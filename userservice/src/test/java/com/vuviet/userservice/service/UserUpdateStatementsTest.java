@@ -0,0 +1,205 @@
+package com.vuviet.userservice.service;
+
+import com.vuviet.userservice.entity.User;
+import com.vuviet.userservice.entity.request.LoginDto;
+import com.vuviet.userservice.entity.request.RegisterDto;
+import com.vuviet.userservice.entity.request.UpdateProfileDto;
+import com.vuviet.userservice.entity.request.UpdateRoleDto;
+import com.vuviet.userservice.repository.UserRepository;
+import com.vuviet.userservice.util.PrincipalCache;
+import com.vuviet.userservice.util.TokenEpochStore;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//Đếm số câu SQL chạm bảng users của mỗi thao tác ghi. Dùng DB riêng vì StatementInspector
+//là cấu hình của SessionFactory, khác context với các test khác
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:quiz_updates;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.vuviet.userservice.service.UserUpdateStatementsTest$SqlRecorder"
+})
+@ActiveProfiles("h2")
+class UserUpdateStatementsTest {
+    private static final Pattern USERS_TABLE=Pattern.compile("\\busers\\b");
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenEpochStore tokenEpochs;
+
+    //Khóa/mở khóa không đọc user trước: câu duy nhất chạm bảng users là UPDATE
+    @Test
+    void deactivateAndActivateAreOneStatementEach() {
+        long id=register("toggle");
+
+        assertThat(userStatements(() -> userService.deactivateUser(id))).singleElement()
+                .satisfies(sql -> assertThat(sql).startsWith("update users"));
+        User deactivated=userRepository.findById(id).orElseThrow();
+        assertThat(deactivated.getIsActive()).isFalse();
+        assertThat(deactivated.getTokenVersion()).isEqualTo(1);
+        assertThat(deactivated.getVersion()).isEqualTo(1);
+
+        assertThat(userStatements(() -> userService.activeUser(id))).singleElement()
+                .satisfies(sql -> assertThat(sql).startsWith("update users"));
+        assertThat(userRepository.findById(id).orElseThrow().getIsActive()).isTrue();
+    }
+
+    @Test
+    void deactivateEvictsCachedPrincipalAndOldTokens() {
+        long id=register("evicted");
+        userDetailsService.loadUserByUsername("evicted");
+        assertThat(principalCache.getById(id)).isNotNull();
+        int before=tokenEpochs.current(id);
+
+        userService.deactivateUser(id);
+
+        assertThat(principalCache.getById(id)).isNull();
+        assertThat(tokenEpochs.current(id)).isEqualTo(before+1);
+    }
+
+    @Test
+    void toggleUnknownUserFails() {
+        assertThatThrownBy(() -> userService.deactivateUser(Long.MAX_VALUE)).hasMessage("User not found");
+        assertThatThrownBy(() -> userService.activeUser(Long.MAX_VALUE)).hasMessage("User not found");
+    }
+
+    //Đọc user theo username rồi một câu UPDATE, không có query kiểm tra email trước
+    @Test
+    void profileUpdateWithPasswordIsOneUpdate() {
+        long id=register("profile");
+        UpdateProfileDto updateProfileDto=new UpdateProfileDto();
+        updateProfileDto.setEmail("profile-new@gmail.com");
+        updateProfileDto.setPassword("654321");
+        updateProfileDto.setFullName("Renamed");
+
+        List<String> statements=userStatements(() -> userService.UpdateProfile("profile", updateProfileDto));
+        assertThat(statements).hasSize(2);
+        assertThat(statements.get(1)).startsWith("update users");
+        User updated=userRepository.findById(id).orElseThrow();
+        assertThat(updated.getEmail()).isEqualTo("profile-new@gmail.com");
+        assertThat(updated.getFullName()).isEqualTo("Renamed");
+        assertThat(updated.getTokenVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void profileEmailConflictIsDetectedByConstraint() {
+        register("taken");
+        long id=register("mover");
+        UpdateProfileDto updateProfileDto=new UpdateProfileDto();
+        updateProfileDto.setEmail("taken@gmail.com");
+
+        assertThatThrownBy(() -> userService.UpdateProfile("mover", updateProfileDto)).hasMessage("Email already exists");
+        assertThat(userRepository.findById(id).orElseThrow().getEmail()).isEqualTo("mover@gmail.com");
+    }
+
+    //Xóa cache trước commit thì login chen vào giữa nạp lại bản cũ, nên chỉ được xóa sau commit
+    @Test
+    void profileUpdateEvictsCachedPrincipalAfterCommit() {
+        long id=register("cached");
+        userDetailsService.loadUserByUsername("cached");
+        UpdateProfileDto updateProfileDto=new UpdateProfileDto();
+        updateProfileDto.setFullName("Cached Renamed");
+
+        TransactionTemplate transactionTemplate=new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            userService.UpdateProfile("cached", updateProfileDto);
+            assertThat(principalCache.getById(id)).isNotNull();
+        });
+        assertThat(principalCache.getById(id)).isNull();
+        assertThat(userService.getUserResponse(id).orElseThrow().getFullName()).isEqualTo("Cached Renamed");
+    }
+
+    @Test
+    void roleChangeIsOneUpdate() {
+        long id=register("promoted");
+        UpdateRoleDto updateRoleDto=new UpdateRoleDto();
+        updateRoleDto.setRoleName("TEACHER");
+
+        assertThat(userStatements(() -> userService.updateUserRole(id, updateRoleDto)))
+                .filteredOn(sql -> sql.startsWith("update users")).hasSize(1);
+        assertThat(userService.getUserResponse(id).orElseThrow().getRole()).isEqualTo("TEACHER");
+    }
+
+    @Test
+    void loginDoesNotUpdateUser() {
+        register("login");
+        LoginDto loginDto=new LoginDto();
+        loginDto.setUsername("login");
+        loginDto.setPassword("123456");
+
+        assertThat(userStatements(() -> authService.login(loginDto))).noneMatch(sql -> sql.startsWith("update users"));
+    }
+
+    @Test
+    void staleVersionUpdatesNothing() {
+        long id=register("stale");
+        User user=userRepository.findById(id).orElseThrow();
+        userService.deactivateUser(id);
+
+        TransactionTemplate transactionTemplate=new TransactionTemplate(transactionManager);
+        Integer updated=transactionTemplate.execute(status ->
+                userRepository.updateRole(id, user.getRole(), user.getVersion(), LocalDateTime.now()));
+        assertThat(updated).isZero();
+        assertThat(userRepository.findById(id).orElseThrow().getIsActive()).isFalse();
+    }
+
+    private long register(String username){
+        RegisterDto registerDto=new RegisterDto();
+        registerDto.setUsername(username);
+        registerDto.setPassword("123456");
+        registerDto.setEmail(username+"@gmail.com");
+        registerDto.setFullName("Test "+username);
+        authService.register(registerDto);
+        return userRepository.findByUsername(username).orElseThrow().getId();
+    }
+
+    //Mọi câu SQL có bảng users (SELECT lẫn UPDATE), chữ thường
+    private static List<String> userStatements(Runnable operation){
+        SqlRecorder.STATEMENTS.clear();
+        operation.run();
+        return SqlRecorder.STATEMENTS.stream()
+                .map(sql -> sql.toLowerCase(Locale.ROOT))
+                .filter(sql -> USERS_TABLE.matcher(sql).find())
+                .toList();
+    }
+
+    //Hibernate tự tạo instance theo tên class nên kết quả để trong biến static
+    public static class SqlRecorder implements StatementInspector {
+        static final List<String> STATEMENTS=new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
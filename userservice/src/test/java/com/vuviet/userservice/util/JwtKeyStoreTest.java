@@ -0,0 +1,115 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.SigningKey;
+import com.vuviet.userservice.repository.SigningKeyRepository;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Mỗi store trong test đóng vai một instance của user-service dùng chung bảng jwt_signing_keys.
+//Dùng DB riêng vì test xóa hết key
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:quiz_keys;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@ActiveProfiles("h2")
+class JwtKeyStoreTest {
+    private static final int INSTANCES=4;
+
+    @Autowired
+    private SigningKeyRepository signingKeyRepository;
+
+    @Autowired
+    private SigningKeyCipher cipher;
+
+    @BeforeEach
+    void clearKeys() {
+        signingKeyRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentFirstBootCreatesOneKey() throws Exception {
+        ExecutorService executor=Executors.newFixedThreadPool(INSTANCES);
+        CountDownLatch start=new CountDownLatch(1);
+        List<Future<JwtKeyStore>> results=new ArrayList<>();
+        for(int i=0;i<INSTANCES;i++){
+            results.add(executor.submit(() -> {
+                JwtKeyStore store=store(Duration.ZERO);
+                start.await();
+                store.refresh();
+                return store;
+            }));
+        }
+        start.countDown();
+
+        List<String> signingKids=new ArrayList<>();
+        for(Future<JwtKeyStore> result: results){
+            JwtKeyStore store=result.get(60, TimeUnit.SECONDS);
+            store.refresh();
+            signingKids.add(store.getSigningKey().getKid());
+        }
+        executor.shutdownNow();
+
+        assertThat(signingKeyRepository.count()).isEqualTo(1);
+        assertThat(signingKids).containsOnly(signingKeyRepository.findAll().get(0).getKid());
+    }
+
+    //Chưa ai giữ token ký bằng key đầu tiên nên không cần chờ pre-publish, key sau mới được pre-publish
+    @Test
+    void firstKeyIsActiveImmediatelyAndNextKeyIsPrePublished() {
+        JwtKeyStore store=store(Duration.ofMinutes(10));
+        store.refresh();
+        String firstKid=store.getSigningKey().getKid();
+
+        SigningKey first=signingKeyRepository.findById(firstKid).orElseThrow();
+        first.setActivatesAt(Instant.now().minus(Duration.ofDays(7)));
+        signingKeyRepository.save(first);
+        store.refresh();
+
+        assertThat(store.getPublishedKeys()).hasSize(2);
+        assertThat(store.getPublishedKeys().get(0).getActivatesAt()).isAfter(Instant.now().plus(Duration.ofMinutes(9)));
+        assertThat(store.getSigningKey().getKid()).isEqualTo(firstKid);
+    }
+
+    @Test
+    void privateKeysAreStoredEncrypted() {
+        KeyPair keyPair=Keys.keyPairFor(SignatureAlgorithm.RS256);
+        String plain=Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        signingKeyRepository.save(new SigningKey("legacy", "RS256",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()), plain,
+                Instant.now(), Instant.now(), null));
+
+        JwtKeyStore store=store(Duration.ZERO);
+        store.refresh();
+
+        SigningKey stored=signingKeyRepository.findById("legacy").orElseThrow();
+        assertThat(cipher.isEncrypted(stored.getPrivateKey())).isTrue();
+        assertThat(stored.getPrivateKey()).doesNotContain(plain);
+        assertThat(store.getSigningKey().getKid()).isEqualTo("legacy");
+        assertThat(store.getSigningKey().getPrivateKey()).isEqualTo(keyPair.getPrivate());
+    }
+
+    private JwtKeyStore store(Duration prePublish){
+        JwtKeyStore store=new JwtKeyStore(signingKeyRepository, cipher);
+        ReflectionTestUtils.setField(store, "rotationInterval", Duration.ofDays(7));
+        ReflectionTestUtils.setField(store, "prePublish", prePublish);
+        ReflectionTestUtils.setField(store, "retention", Duration.ofHours(1));
+        return store;
+    }
+}
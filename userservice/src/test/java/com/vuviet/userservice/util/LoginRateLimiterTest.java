@@ -0,0 +1,79 @@
+package com.vuviet.userservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginRateLimiterTest {
+    private static final int THREADS=32;
+
+    @Test
+    void concurrentBurstDoesNotExceedUsernameLimit() throws Exception {
+        LoginRateLimiter limiter=limiter(5, 300);
+        ExecutorService executor=Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start=new CountDownLatch(1);
+        List<Future<Long>> results=new ArrayList<>();
+        for(int i=0;i<THREADS;i++){
+            String clientIp="10.0.0."+i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return limiter.tryAcquire("Victim", clientIp);
+            }));
+        }
+        start.countDown();
+
+        int allowed=0;
+        for(Future<Long> result: results){
+            if(result.get(10, TimeUnit.SECONDS)==0){
+                allowed++;
+            }
+        }
+        executor.shutdownNow();
+
+        assertThat(allowed).isEqualTo(5);
+    }
+
+    @Test
+    void sharedIpIsLimitedSeparatelyFromUsernames() {
+        LoginRateLimiter limiter=limiter(5, 30);
+        for(int i=0;i<30;i++){
+            assertThat(limiter.tryAcquire("student"+i, "192.168.1.1")).isZero();
+        }
+        assertThat(limiter.tryAcquire("student30", "192.168.1.1")).isPositive();
+        assertThat(limiter.tryAcquire("student30", "192.168.1.2")).isZero();
+    }
+
+    //Map đầy thì username mới bị từ chối, username đã theo dõi vẫn bị giới hạn như thường
+    @Test
+    void fullMapFailsClosedForNewUsernames() {
+        LoginRateLimiter limiter=limiter(5, 300);
+        ReflectionTestUtils.setField(limiter, "maxKeys", 2);
+        for(int i=0;i<5;i++){
+            assertThat(limiter.tryAcquire("tracked", "10.0.0.1")).isZero();
+        }
+        assertThat(limiter.tryAcquire("tracked", "10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire("tracked", "10.0.0.2")).isPositive();
+        assertThat(limiter.tryAcquire("sprayed", "10.0.0.1")).isPositive();
+
+        limiter.reset("tracked");
+        assertThat(limiter.tryAcquire("tracked", "10.0.0.2")).isZero();
+    }
+
+    private static LoginRateLimiter limiter(int maxPerUsername, int maxPerIp){
+        LoginRateLimiter limiter=new LoginRateLimiter();
+        ReflectionTestUtils.setField(limiter, "maxAttemptsPerUsername", maxPerUsername);
+        ReflectionTestUtils.setField(limiter, "maxAttemptsPerIp", maxPerIp);
+        ReflectionTestUtils.setField(limiter, "windowSeconds", 60L);
+        ReflectionTestUtils.setField(limiter, "maxKeys", 100000);
+        return limiter;
+    }
+}
@@ -0,0 +1,47 @@
+package com.vuviet.userservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    @Test
+    void errorInSupplierDoesNotLeaveCallBehind() {
+        SingleFlight<String, String> flight=new SingleFlight<>(5000, 1000);
+
+        assertThatThrownBy(() -> flight.execute("key", () -> {
+            throw new StackOverflowError();
+        })).isInstanceOf(StackOverflowError.class);
+
+        assertThat(flight.size()).isZero();
+        assertThat(flight.execute("key", () -> "value")).isEqualTo("value");
+    }
+
+    @Test
+    void waiterGivesUpAfterTimeout() throws Exception {
+        SingleFlight<String, String> flight=new SingleFlight<>(5000, 200);
+        CountDownLatch started=new CountDownLatch(1);
+        CountDownLatch release=new CountDownLatch(1);
+        CompletableFuture<String> leader=CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            started.countDown();
+            try {
+                release.await();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> flight.execute("key", () -> "other"))
+                .hasMessage("Timed out waiting for shared result");
+
+        release.countDown();
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+}
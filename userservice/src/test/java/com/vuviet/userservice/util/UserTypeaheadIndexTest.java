@@ -0,0 +1,62 @@
+package com.vuviet.userservice.util;
+
+import com.vuviet.userservice.entity.response.UserSuggestionResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserTypeaheadIndexTest {
+    @Test
+    void deltaMatchesWithoutAccentsAndHidesOldVersion() {
+        UserTypeaheadIndex index=index(mock(JdbcTemplate.class));
+        index.replaceAll(List.of(new UserSuggestionResponse(1L, "an", "an@gmail.com", "Trần Văn An")));
+        index.put(new UserSuggestionResponse(1L, "an", "an@gmail.com", "Nguyễn Văn An"));
+        index.put(new UserSuggestionResponse(2L, "thao", "thao@gmail.com", "Đặng Thị Thảo"));
+
+        assertThat(index.search("tran", 10)).isEmpty();
+        assertThat(index.search("nguyen", 10)).extracting(UserSuggestionResponse::getId).containsExactly(1L);
+        assertThat(index.search("dang", 10)).extracting(UserSuggestionResponse::getId).containsExactly(2L);
+        assertThat(index.search("thao", 10)).extracting(UserSuggestionResponse::getId).containsExactly(2L);
+    }
+
+    @Test
+    void loadClearsDeltaAlreadyReadFromDatabase() throws Exception {
+        JdbcTemplate jdbcTemplate=mock(JdbcTemplate.class);
+        ResultSet row=mock(ResultSet.class);
+        when(row.getLong(1)).thenReturn(2L);
+        when(row.getString(2)).thenReturn("thao");
+        when(row.getString(3)).thenReturn("thao@gmail.com");
+        when(row.getString(4)).thenReturn("Đặng Thị Thảo");
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        UserTypeaheadIndex index=index(jdbcTemplate);
+        index.put(new UserSuggestionResponse(2L, "thao", "thao@gmail.com", "Đặng Thị Thảo"));
+        assertThat(index.size()).isEqualTo(1);
+
+        index.load();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("dang", 10)).extracting(UserSuggestionResponse::getId).containsExactly(2L);
+    }
+
+    private static UserTypeaheadIndex index(JdbcTemplate jdbcTemplate){
+        UserTypeaheadIndex index=new UserTypeaheadIndex(jdbcTemplate);
+        ReflectionTestUtils.setField(index, "compactThreshold", 256);
+        ReflectionTestUtils.setField(index, "maxScan", 2000);
+        return index;
+    }
+}